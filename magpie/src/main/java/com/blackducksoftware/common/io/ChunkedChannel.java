@@ -0,0 +1,239 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A channel that is backed by a list of fixed size chunks. The channel grows by adding chunks so existing contents are
+ * never copied and the size is not limited to {@value Integer#MAX_VALUE} bytes.
+ *
+ * @author jgustie
+ */
+public abstract class ChunkedChannel implements SeekableByteChannel {
+
+    /**
+     * Zeros used to fill gaps left by writing past the end of the channel.
+     */
+    private static final byte[] ZEROS = new byte[8192];
+
+    private final int chunkSize;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    private boolean open = true;
+
+    private long pos;
+
+    private long size;
+
+    protected ChunkedChannel(int chunkSize) {
+        checkArgument(chunkSize > 0, "chunkSize must be positive: %s", chunkSize);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns a new chunk with a capacity of at least the chunk size. The contents of the chunk are undefined.
+     */
+    protected abstract ByteBuffer allocateChunk();
+
+    /**
+     * Releases a chunk which is no longer used by this channel.
+     */
+    protected abstract void releaseChunk(ByteBuffer chunk);
+
+    /**
+     * Returns the size of the chunks used by this channel.
+     */
+    protected final int chunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Returns slices of the chunks covering the current contents of this channel. The slices share content with this
+     * channel: writes to existing content will be visible, however changes to the size will not.
+     */
+    protected final List<ByteBuffer> chunkSlices() throws ClosedChannelException {
+        requireOpen();
+        List<ByteBuffer> slices = new ArrayList<>((int) chunkCount(size));
+        for (long offset = 0L; offset < size; offset += chunkSize) {
+            ByteBuffer slice = chunks.get(slices.size()).duplicate();
+            slice.limit((int) Math.min(chunkSize, size - offset)).position(0);
+            slices.add(slice.slice());
+        }
+        return slices;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        if (open) {
+            open = false;
+            releaseChunks(0L);
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws ClosedChannelException {
+        Objects.requireNonNull(dst);
+        requireOpen();
+        if (pos < size) {
+            int len = (int) Math.min(dst.remaining(), size - pos);
+            for (int remaining = len; remaining > 0;) {
+                ByteBuffer chunk = chunk(pos);
+                int count = Math.min(remaining, chunk.remaining());
+                chunk.limit(chunk.position() + count);
+                dst.put(chunk);
+                pos += count;
+                remaining -= count;
+            }
+            return len;
+        } else {
+            return -1;
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws ClosedChannelException {
+        Objects.requireNonNull(src);
+        requireOpen();
+        int len = src.remaining();
+        ensureCapacity(pos + len);
+        if (pos > size) {
+            fill(size, pos);
+        }
+        int srcLimit = src.limit();
+        try {
+            for (int remaining = len; remaining > 0;) {
+                ByteBuffer chunk = chunk(pos);
+                int count = Math.min(remaining, chunk.remaining());
+                src.limit(src.position() + count);
+                chunk.put(src);
+                pos += count;
+                remaining -= count;
+            }
+        } finally {
+            src.limit(srcLimit);
+        }
+        size = Math.max(size, pos);
+        return len;
+    }
+
+    @Override
+    public long position() throws ClosedChannelException {
+        requireOpen();
+        return pos;
+    }
+
+    @Override
+    public ChunkedChannel position(long newPosition) throws ClosedChannelException {
+        requireOpen();
+        if (newPosition < 0L) {
+            throw new IllegalArgumentException("newPosition must be non-negative");
+        }
+        pos = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws ClosedChannelException {
+        requireOpen();
+        return size;
+    }
+
+    @Override
+    public ChunkedChannel truncate(long size) throws ClosedChannelException {
+        requireOpen();
+        if (size < 0L) {
+            throw new IllegalArgumentException("size must be non-negative");
+        } else if (size < this.size) {
+            this.size = size;
+            releaseChunks(size);
+        }
+        if (pos > size) {
+            pos = size;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the chunk containing the supplied offset, positioned at the offset with the limit set to the chunk size.
+     */
+    private ByteBuffer chunk(long offset) {
+        ByteBuffer chunk = chunks.get((int) (offset / chunkSize));
+        chunk.limit(chunkSize).position((int) (offset % chunkSize));
+        return chunk;
+    }
+
+    /**
+     * Returns the number of chunks required to hold the specified number of bytes.
+     */
+    private long chunkCount(long capacity) {
+        return (capacity + chunkSize - 1) / chunkSize;
+    }
+
+    /**
+     * Allocates enough chunks to hold the specified number of bytes.
+     */
+    private void ensureCapacity(long capacity) {
+        long required = chunkCount(capacity);
+        checkArgument(required <= Integer.MAX_VALUE, "capacity exceeded: %s", capacity);
+        while (chunks.size() < required) {
+            chunks.add(allocateChunk());
+        }
+    }
+
+    /**
+     * Releases the chunks beyond the specified size.
+     */
+    private void releaseChunks(long size) {
+        long required = chunkCount(size);
+        while (chunks.size() > required) {
+            releaseChunk(chunks.remove(chunks.size() - 1));
+        }
+    }
+
+    /**
+     * Zeros the specified range, chunks may contain data from their previous use.
+     */
+    private void fill(long start, long end) {
+        for (long offset = start; offset < end;) {
+            ByteBuffer chunk = chunk(offset);
+            int count = (int) Math.min(end - offset, chunk.remaining());
+            for (int remaining = count; remaining > 0; remaining -= ZEROS.length) {
+                chunk.put(ZEROS, 0, Math.min(remaining, ZEROS.length));
+            }
+            offset += count;
+        }
+    }
+
+    private void requireOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
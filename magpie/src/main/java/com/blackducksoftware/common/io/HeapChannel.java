@@ -29,7 +29,8 @@ import java.util.Set;
 import com.google.common.annotations.Beta;
 
 /**
- * A channel that is backed by a byte array.
+ * A channel that is backed by a byte array. Writes past the end of the array copy the contents into a new array, for
+ * content that grows incrementally or exceeds {@value Integer#MAX_VALUE} bytes use a {@link RopeChannel}.
  *
  * @author jgustie
  */
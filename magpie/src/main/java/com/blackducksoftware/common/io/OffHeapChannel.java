@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A channel that is backed by fixed size chunks of direct memory. Unlike a {@link HeapChannel}, the contents are not
+ * subject to garbage collection and are not limited to {@value Integer#MAX_VALUE} bytes; growing the channel never
+ * copies the existing contents. Use a {@link RopeChannel} for chunks allocated on the heap.
+ * <p>
+ * Chunks are acquired from a {@link Pool} as the channel grows and are returned to it when the channel is truncated or
+ * closed: a channel which is not closed will not return its chunks to the pool.
+ *
+ * @author jgustie
+ */
+public class OffHeapChannel extends ChunkedChannel {
+
+    /**
+     * A pool of equally sized direct byte buffers. A pool may be shared by multiple concurrent channels.
+     */
+    public static final class Pool {
+
+        private final int chunkSize;
+
+        private final int maximumPooled;
+
+        private final Queue<ByteBuffer> chunks = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger pooled = new AtomicInteger();
+
+        /**
+         * Creates a new pool of chunks with the specified size which retains at most the specified number of released
+         * chunks for reuse.
+         */
+        public Pool(int chunkSize, int maximumPooled) {
+            checkArgument(chunkSize > 0, "chunkSize must be positive: %s", chunkSize);
+            checkArgument(maximumPooled >= 0, "maximumPooled must be non-negative: %s", maximumPooled);
+            this.chunkSize = chunkSize;
+            this.maximumPooled = maximumPooled;
+        }
+
+        /**
+         * Returns the size of the chunks in this pool.
+         */
+        public int chunkSize() {
+            return chunkSize;
+        }
+
+        /**
+         * Returns the number of released chunks currently available for reuse.
+         */
+        public int pooledCount() {
+            return pooled.get();
+        }
+
+        private ByteBuffer acquire() {
+            ByteBuffer chunk = chunks.poll();
+            if (chunk != null) {
+                pooled.decrementAndGet();
+                chunk.clear();
+                return chunk;
+            } else {
+                return ByteBuffer.allocateDirect(chunkSize);
+            }
+        }
+
+        private void release(ByteBuffer chunk) {
+            if (pooled.incrementAndGet() <= maximumPooled) {
+                chunks.offer(chunk);
+            } else {
+                // Let the garbage collector free the memory
+                pooled.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * The pool used by channels that do not specify one: 64KB chunks, retaining at most 16MB.
+     */
+    private static final Pool DEFAULT_POOL = new Pool(64 * 1024, 256);
+
+    private final Pool pool;
+
+    /**
+     * Creates a new empty channel using a default shared pool.
+     */
+    public OffHeapChannel() {
+        this(DEFAULT_POOL);
+    }
+
+    /**
+     * Creates a new empty channel using the supplied pool.
+     */
+    public OffHeapChannel(Pool pool) {
+        super(pool.chunkSize());
+        this.pool = pool;
+    }
+
+    @Override
+    protected ByteBuffer allocateChunk() {
+        return pool.acquire();
+    }
+
+    @Override
+    protected void releaseChunk(ByteBuffer chunk) {
+        pool.release(chunk);
+    }
+
+    @Override
+    public OffHeapChannel position(long newPosition) throws ClosedChannelException {
+        super.position(newPosition);
+        return this;
+    }
+
+    @Override
+    public OffHeapChannel truncate(long size) throws ClosedChannelException {
+        super.truncate(size);
+        return this;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.io;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A channel that is backed by a list of byte arrays. Unlike a {@link HeapChannel}, growing the channel never copies
+ * the existing contents and the size is not limited to {@value Integer#MAX_VALUE} bytes.
+ * <p>
+ * The contents can be accessed without copying using {@link #toByteBuffers()} or {@link #getInputStream()}. Only
+ * {@link #toByteBuffer()} will flatten the contents into a single array.
+ *
+ * @author jgustie
+ */
+public class RopeChannel extends ChunkedChannel {
+
+    private static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    /**
+     * Creates a new empty channel using the default chunk size.
+     */
+    public RopeChannel() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a new empty channel using the specified chunk size.
+     */
+    public RopeChannel(int chunkSize) {
+        super(chunkSize);
+    }
+
+    @Override
+    protected ByteBuffer allocateChunk() {
+        return ByteBuffer.allocate(chunkSize());
+    }
+
+    @Override
+    protected void releaseChunk(ByteBuffer chunk) {
+        // Let the garbage collector free the memory
+    }
+
+    /**
+     * Returns read-only byte buffers for the current contents of this channel, one per chunk. The contents are not
+     * copied, the buffers may be supplied directly to a gathering write.
+     */
+    public ByteBuffer[] toByteBuffers() throws ClosedChannelException {
+        return chunkSlices().stream().map(ByteBuffer::asReadOnlyBuffer).toArray(ByteBuffer[]::new);
+    }
+
+    /**
+     * Returns a read-only byte buffer for the current contents of this channel. If the contents span multiple chunks
+     * they are copied into a single new buffer.
+     */
+    public ByteBuffer toByteBuffer() throws ClosedChannelException {
+        List<ByteBuffer> slices = chunkSlices();
+        if (slices.isEmpty()) {
+            return ByteBuffer.allocate(0).asReadOnlyBuffer();
+        } else if (slices.size() == 1) {
+            return slices.get(0).asReadOnlyBuffer();
+        }
+
+        long size = size();
+        checkState(size <= Integer.MAX_VALUE, "size exceeds the maximum buffer capacity: %s", size);
+        ByteBuffer result = ByteBuffer.allocate((int) size);
+        slices.forEach(result::put);
+        result.flip();
+        return result.asReadOnlyBuffer();
+    }
+
+    /**
+     * Creates a new input stream from the current contents of this channel. The contents are not copied, however if
+     * additional content is written past the current size, it will not be reflected by the returned stream.
+     */
+    public InputStream getInputStream() throws ClosedChannelException {
+        List<InputStream> streams = chunkSlices().stream().map(HeapInputStream::new).collect(Collectors.toList());
+        return new SequenceInputStream(Collections.enumeration(streams));
+    }
+
+    @Override
+    public RopeChannel position(long newPosition) throws ClosedChannelException {
+        super.position(newPosition);
+        return this;
+    }
+
+    @Override
+    public RopeChannel truncate(long size) throws ClosedChannelException {
+        super.truncate(size);
+        return this;
+    }
+}
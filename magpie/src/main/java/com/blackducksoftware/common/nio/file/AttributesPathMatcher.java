@@ -0,0 +1,37 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.nio.file;
+
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A path matcher which can use file attributes that were already read by the caller (e.g. during a file tree walk)
+ * instead of reading them again from the file system.
+ *
+ * @author jgustie
+ * @see ExtraFileVisitors#filter(java.nio.file.FileVisitor, PathMatcher)
+ */
+public interface AttributesPathMatcher extends PathMatcher {
+
+    /**
+     * Tells if the supplied path matches this matcher's pattern. The attributes must have been read without following
+     * symbolic links.
+     */
+    boolean matches(Path path, BasicFileAttributes attrs);
+
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.nio.file;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+
+import com.blackducksoftware.common.nio.file.FnMatch.Flag;
+
+/**
+ * A pre-compiled {@link FnMatch} pattern. The pattern is parsed once into an array of instructions with the flags
+ * resolved; matching does not recurse or allocate.
+ * <p>
+ * Unlike {@code FnMatch}, patterns and strings are compared by code point so a supplementary character is matched by
+ * a single {@code ?}. When {@link Flag#CASEFOLD} is set the pattern is folded to lower case when it is compiled, only
+ * the characters of the string are folded while matching (using a table for ASCII characters).
+ * <p>
+ * Matching uses the same semantics as {@link FnMatch#fnmatch(String, String, java.util.EnumSet)}, including the
+ * OpenBSD behavior of disabling {@link Flag#PERIOD} once a star has to backtrack. Instead of recursing for each star
+ * only the most recent star is retried: since a star cannot match a slash when {@link Flag#PATHNAME} is set, retrying
+ * an earlier star can never produce a different result.
+ *
+ * @author jgustie
+ */
+final class CompiledFnMatch {
+
+    /**
+     * Matches the literal character.
+     */
+    private static final byte LITERAL = 0;
+
+    /**
+     * Matches any single character ({@code ?}).
+     */
+    private static final byte ANY = 1;
+
+    /**
+     * Matches a single character using a bracket expression ({@code [...]}).
+     */
+    private static final byte CLASS = 2;
+
+    /**
+     * Matches a bracket expression which contains a slash while matching path names, this never matches.
+     */
+    private static final byte NEVER = 3;
+
+    /**
+     * Matches any sequence of characters ({@code *}).
+     */
+    private static final byte STAR = 4;
+
+    /**
+     * A star that is immediately followed by a slash while matching path names, skips to the next slash.
+     */
+    private static final byte STAR_SLASH = 5;
+
+    /**
+     * A star at the end of the pattern.
+     */
+    private static final byte STAR_END = 6;
+
+    /**
+     * The lower case version of each ASCII character.
+     */
+    private static final int[] ASCII_LOWER_CASE = new int[128];
+    static {
+        for (int c = 0; c < ASCII_LOWER_CASE.length; ++c) {
+            ASCII_LOWER_CASE[c] = c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+        }
+    }
+
+    /**
+     * A parsed bracket expression. Each item is stored as an inclusive range of code points.
+     */
+    private static final class CharacterClass {
+        private final int[] ranges;
+
+        private final boolean negate;
+
+        private CharacterClass(int[] ranges, boolean negate) {
+            this.ranges = Objects.requireNonNull(ranges);
+            this.negate = negate;
+        }
+
+        private boolean matches(int c) {
+            boolean ok = false;
+            for (int i = 0; i < ranges.length && !ok; i += 2) {
+                ok = ranges[i] <= c && c <= ranges[i + 1];
+            }
+            return ok != negate;
+        }
+    }
+
+    private final String pattern;
+
+    /**
+     * The instruction codes.
+     */
+    private final byte[] ops;
+
+    /**
+     * The literal code point for each instruction, case folded if necessary.
+     */
+    private final int[] literals;
+
+    /**
+     * The bracket expression for each instruction, {@code null} except for {@link #CLASS} instructions.
+     */
+    private final CharacterClass[] classes;
+
+    private final boolean pathname;
+
+    private final boolean period;
+
+    private final boolean leadingDir;
+
+    private final boolean casefold;
+
+    private CompiledFnMatch(String pattern, Set<Flag> flags) {
+        this.pattern = Objects.requireNonNull(pattern);
+        pathname = flags.contains(Flag.PATHNAME);
+        period = flags.contains(Flag.PERIOD);
+        leadingDir = flags.contains(Flag.LEADING_DIR);
+        casefold = flags.contains(Flag.CASEFOLD);
+        boolean noescape = flags.contains(Flag.NOESCAPE);
+
+        byte[] ops = new byte[pattern.length()];
+        int[] literals = new int[pattern.length()];
+        CharacterClass[] classes = new CharacterClass[pattern.length()];
+        int size = 0;
+        int pos = 0;
+        while (pos < pattern.length()) {
+            int c = pattern.codePointAt(pos);
+            pos += Character.charCount(c);
+            int end = c == '[' ? parseClass(pattern, pos, noescape) : -1;
+            if (c == '?') {
+                ops[size++] = ANY;
+            } else if (c == '*') {
+                while (pos < pattern.length() && pattern.charAt(pos) == '*') {
+                    pos++;
+                }
+                if (pos == pattern.length()) {
+                    ops[size++] = STAR_END;
+                } else if (pathname && pattern.charAt(pos) == '/') {
+                    ops[size++] = STAR_SLASH;
+                } else {
+                    ops[size++] = STAR;
+                }
+            } else if (end >= 0) {
+                if (end == Integer.MAX_VALUE) {
+                    // Nothing past this point is reachable
+                    ops[size++] = NEVER;
+                    break;
+                }
+                ops[size] = CLASS;
+                classes[size++] = newClass(pattern, pos, end, noescape);
+                pos = end;
+            } else {
+                if (c == '\\' && !noescape && pos < pattern.length()) {
+                    c = pattern.codePointAt(pos);
+                    pos += Character.charCount(c);
+                }
+                ops[size] = LITERAL;
+                literals[size++] = casefold ? toLowerCase(c) : c;
+            }
+        }
+        this.ops = Arrays.copyOf(ops, size);
+        this.literals = Arrays.copyOf(literals, size);
+        this.classes = Arrays.copyOf(classes, size);
+    }
+
+    /**
+     * Compiles the supplied pattern.
+     */
+    public static CompiledFnMatch compile(String pattern, Set<Flag> flags) {
+        return new CompiledFnMatch(pattern, flags);
+    }
+
+    /**
+     * Folds the supplied string to lower case the same way strings are folded when matching with
+     * {@link Flag#CASEFOLD}. Returns the same instance if nothing changes.
+     */
+    public static String foldCase(String string) {
+        for (int i = 0; i < string.length(); ++i) {
+            int c = string.codePointAt(i);
+            if (toLowerCase(c) != c) {
+                StringBuilder result = new StringBuilder(string.length()).append(string, 0, i);
+                for (int j = i; j < string.length(); j += Character.charCount(c)) {
+                    c = string.codePointAt(j);
+                    result.appendCodePoint(toLowerCase(c));
+                }
+                return result.toString();
+            }
+            i += Character.charCount(c) - 1;
+        }
+        return string;
+    }
+
+    /**
+     * Returns the original pattern.
+     */
+    public String pattern() {
+        return pattern;
+    }
+
+    /**
+     * Tests the supplied string against this pattern.
+     */
+    public boolean matches(CharSequence string) {
+        int length = string.length();
+        boolean period = this.period;
+        int opsPos = 0;
+        int stringPos = 0;
+
+        // The position to retry from if the current attempt fails, or -1 if there is nothing to retry
+        int starOpsPos = -1;
+        int starStringPos = -1;
+
+        while (true) {
+            boolean matched;
+            if (opsPos == ops.length) {
+                if (stringPos == length || (leadingDir && string.charAt(stringPos) == '/')) {
+                    return true;
+                }
+                matched = false;
+            } else {
+                switch (ops[opsPos]) {
+                case LITERAL:
+                    matched = stringPos < length && equals(literals[opsPos], string, stringPos);
+                    break;
+                case ANY:
+                    matched = isMatchable(string, stringPos, period);
+                    break;
+                case CLASS:
+                    matched = isMatchable(string, stringPos, period) && classes[opsPos].matches(fold(codePointAt(string, stringPos)));
+                    break;
+                case NEVER:
+                    matched = false;
+                    break;
+                case STAR:
+                    if (isLeadingPeriod(string, stringPos, period) || stringPos >= length) {
+                        matched = false;
+                        break;
+                    }
+                    // The remainder is matched as if PERIOD were not set
+                    period = false;
+                    starOpsPos = ++opsPos;
+                    starStringPos = stringPos;
+                    continue;
+                case STAR_SLASH:
+                    if (isLeadingPeriod(string, stringPos, period)) {
+                        matched = false;
+                        break;
+                    }
+                    int slash = indexOf(string, '/', stringPos);
+                    if (slash < 0) {
+                        matched = false;
+                        break;
+                    }
+                    stringPos = slash;
+                    opsPos++;
+                    continue;
+                case STAR_END:
+                    if (isLeadingPeriod(string, stringPos, period)) {
+                        matched = false;
+                    } else if (!pathname || leadingDir || indexOf(string, '/', stringPos) < 0) {
+                        return true;
+                    } else {
+                        matched = false;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("invalid instruction: " + ops[opsPos]);
+                }
+                if (matched) {
+                    opsPos++;
+                    stringPos = next(string, stringPos);
+                    continue;
+                }
+            }
+
+            // Let the most recent star consume one more character, if the star is followed by a literal skip ahead
+            // to the next position where the literal can match
+            if (starOpsPos < 0) {
+                return false;
+            }
+            do {
+                if (pathname && string.charAt(starStringPos) == '/') {
+                    return false;
+                }
+                starStringPos = next(string, starStringPos);
+                if (starStringPos >= length) {
+                    return false;
+                }
+            } while (ops[starOpsPos] == LITERAL && !equals(literals[starOpsPos], string, starStringPos));
+            opsPos = starOpsPos;
+            stringPos = starStringPos;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+    /**
+     * Folds a code point from the string being matched.
+     */
+    private int fold(int c) {
+        return casefold ? toLowerCase(c) : c;
+    }
+
+    private static int toLowerCase(int c) {
+        return c < ASCII_LOWER_CASE.length ? ASCII_LOWER_CASE[c] : Character.toLowerCase(c);
+    }
+
+    /**
+     * Compares a literal from the pattern to the code point at the supplied position.
+     */
+    private boolean equals(int literal, CharSequence string, int index) {
+        char c = string.charAt(index);
+        if (c == literal) {
+            return true;
+        } else if (c < ASCII_LOWER_CASE.length) {
+            return casefold && ASCII_LOWER_CASE[c] == literal;
+        } else {
+            int cp = Character.isHighSurrogate(c) ? Character.codePointAt(string, index) : c;
+            return cp == literal || (casefold && Character.toLowerCase(cp) == literal);
+        }
+    }
+
+    /**
+     * Returns the position of the code point following the one at the supplied position.
+     */
+    private static int next(CharSequence string, int index) {
+        return Character.isHighSurrogate(string.charAt(index++)) && index < string.length() && Character.isLowSurrogate(string.charAt(index))
+                ? index + 1
+                : index;
+    }
+
+    /**
+     * Returns the code point at the supplied position, avoiding the surrogate checks for most characters.
+     */
+    private static int codePointAt(CharSequence string, int index) {
+        char c = string.charAt(index);
+        return Character.isHighSurrogate(c) ? Character.codePointAt(string, index) : c;
+    }
+
+    /**
+     * Checks the conditions for matching a single character using {@code ?} or a bracket expression.
+     */
+    private boolean isMatchable(CharSequence string, int stringPos, boolean period) {
+        return stringPos < string.length()
+                && !(pathname && string.charAt(stringPos) == '/')
+                && !isLeadingPeriod(string, stringPos, period);
+    }
+
+    private boolean isLeadingPeriod(CharSequence string, int stringPos, boolean period) {
+        return period
+                && stringPos < string.length()
+                && string.charAt(stringPos) == '.'
+                && (stringPos == 0 || (pathname && string.charAt(stringPos - 1) == '/'));
+    }
+
+    private static int indexOf(CharSequence string, char c, int fromIndex) {
+        for (int i = fromIndex; i < string.length(); ++i) {
+            if (string.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the end of the bracket expression starting at the supplied position (just past the opening bracket).
+     * Returns the position after the closing bracket, -1 if the expression is not valid and should be treated as
+     * literal text, or {@link Integer#MAX_VALUE} if the expression can never match.
+     */
+    private int parseClass(String pattern, int pos, boolean noescape) {
+        if (pos < pattern.length() && (pattern.charAt(pos) == '!' || pattern.charAt(pos) == '^')) {
+            pos++;
+        }
+        if (pos >= pattern.length()) {
+            return -1;
+        }
+        int c = pattern.codePointAt(pos);
+        pos += Character.charCount(c);
+        do {
+            if (c == '\\' && !noescape) {
+                if (pos >= pattern.length()) {
+                    return -1;
+                }
+                c = pattern.codePointAt(pos);
+                pos += Character.charCount(c);
+            }
+            if (c == '/' && pathname) {
+                return Integer.MAX_VALUE;
+            }
+            if (pos + 1 < pattern.length() && pattern.charAt(pos) == '-' && pattern.charAt(pos + 1) != ']') {
+                int c2 = pattern.codePointAt(pos + 1);
+                pos += 1 + Character.charCount(c2);
+                if (c2 == '\\' && !noescape) {
+                    if (pos >= pattern.length()) {
+                        return -1;
+                    }
+                    pos += Character.charCount(pattern.codePointAt(pos));
+                }
+            }
+            if (pos >= pattern.length()) {
+                return -1;
+            }
+            c = pattern.codePointAt(pos);
+            pos += Character.charCount(c);
+        } while (c != ']');
+        return pos;
+    }
+
+    /**
+     * Creates the bracket expression between the supplied positions, the expression must already be validated.
+     */
+    private CharacterClass newClass(String pattern, int pos, int end, boolean noescape) {
+        boolean negate = pattern.charAt(pos) == '!' || pattern.charAt(pos) == '^';
+        if (negate) {
+            pos++;
+        }
+        int[] ranges = new int[(end - pos) * 2];
+        int size = 0;
+        int c = pattern.codePointAt(pos);
+        pos += Character.charCount(c);
+        do {
+            if (c == '\\' && !noescape) {
+                c = pattern.codePointAt(pos);
+                pos += Character.charCount(c);
+            }
+            int c2 = c;
+            if (pos + 1 < end && pattern.charAt(pos) == '-' && pattern.charAt(pos + 1) != ']') {
+                c2 = pattern.codePointAt(pos + 1);
+                pos += 1 + Character.charCount(c2);
+                if (c2 == '\\' && !noescape) {
+                    c2 = pattern.codePointAt(pos);
+                    pos += Character.charCount(c2);
+                }
+            }
+            ranges[size++] = casefold ? toLowerCase(c) : c;
+            ranges[size++] = casefold ? toLowerCase(c2) : c2;
+            c = pattern.codePointAt(pos);
+            pos += Character.charCount(c);
+        } while (c != ']');
+        return new CharacterClass(Arrays.copyOf(ranges, size), negate);
+    }
+
+}
@@ -15,8 +15,7 @@
  */
 package com.blackducksoftware.common.nio.file;
 
-import static com.blackducksoftware.common.base.ExtraStrings.ensureDelimiter;
-import static com.blackducksoftware.common.nio.file.FnMatch.fnmatch;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.stream.Collectors.collectingAndThen;
 import static java.util.stream.Collectors.toList;
@@ -29,36 +28,199 @@ import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
+import javax.annotation.Nullable;
+
 import com.google.common.base.CharMatcher;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 /**
  * A filtering mechanism based on Git conventions.
  *
  * @author jgustie
  */
-public class ExcludePathMatcher implements PathMatcher {
+public class ExcludePathMatcher implements AttributesPathMatcher {
 
     /**
-     * A path matcher for an individual pattern.
+     * The characters which have special meaning in a pattern.
      */
-    private static class PatternPathMatcher implements PathMatcher, Comparable<PatternPathMatcher> {
+    private static final CharMatcher WILDCARDS = CharMatcher.anyOf("*?[\\");
+
+    /**
+     * The classification of a pattern, used to determine how the pattern is evaluated. Only {@link #GLOB} patterns
+     * are evaluated using {@link FnMatch}, the other types are found using hash lookups.
+     */
+    public enum PatternType {
+        /**
+         * A literal name matched against each name in the path, e.g. {@code node_modules}.
+         */
+        NAME,
+        /**
+         * A literal followed by a single star matched against each name in the path, e.g. {@code build*}.
+         */
+        PREFIX,
+        /**
+         * A single star followed by a literal matched against each name in the path, e.g. {@code *.class}.
+         */
+        SUFFIX,
+        /**
+         * A literal matched against the full relative path name, e.g. {@code /build} or {@code doc/api}.
+         */
+        PATH,
+        /**
+         * Any other pattern.
+         */
+        GLOB,
+    }
+
+    /**
+     * Statistics about the patterns used by a matcher.
+     */
+    public static final class PatternStats {
+
+        private final long[] patternCounts;
 
-        private static final EnumSet<FnMatch.Flag> PATHNAME = EnumSet.of(FnMatch.Flag.PATHNAME);
+        private final long[] matchCounts;
+
+        private final long pathCount;
+
+        private final long fileReadCount;
+
+        private final long directoryCount;
+
+        private PatternStats(long[] patternCounts, long[] matchCounts, long pathCount, long fileReadCount, long directoryCount) {
+            this.patternCounts = Objects.requireNonNull(patternCounts);
+            this.matchCounts = Objects.requireNonNull(matchCounts);
+            this.pathCount = pathCount;
+            this.fileReadCount = fileReadCount;
+            this.directoryCount = directoryCount;
+        }
+
+        /**
+         * Returns the number of patterns of the specified type. Per-directory patterns are counted once for each
+         * directory they are loaded for.
+         */
+        public long patternCount(PatternType type) {
+            return patternCounts[type.ordinal()];
+        }
+
+        /**
+         * Returns the number of paths whose outcome was decided by a pattern of the specified type.
+         */
+        public long matchCount(PatternType type) {
+            return matchCounts[type.ordinal()];
+        }
+
+        /**
+         * Returns the number of times a pattern was evaluated using {@link FnMatch} (i.e. the slow path).
+         */
+        public long globEvaluationCount() {
+            return matchCounts[matchCounts.length - 1];
+        }
+
+        /**
+         * Returns the number of paths tested against a list of patterns.
+         */
+        public long pathCount() {
+            return pathCount;
+        }
+
+        /**
+         * Returns the number of exclude-per-directory files which have been read.
+         */
+        public long fileReadCount() {
+            return fileReadCount;
+        }
+
+        /**
+         * Returns the number of directories whose exclude-per-directory rules are currently cached.
+         */
+        public long directoryCount() {
+            return directoryCount;
+        }
+
+        @Override
+        public String toString() {
+            MoreObjects.ToStringHelper helper = MoreObjects.toStringHelper(this);
+            for (PatternType type : PatternType.values()) {
+                helper.add(type.name().toLowerCase(Locale.ROOT), patternCounts[type.ordinal()] + "/" + matchCounts[type.ordinal()]);
+            }
+            return helper
+                    .add("globEvaluationCount", globEvaluationCount())
+                    .add("pathCount", pathCount)
+                    .add("fileReadCount", fileReadCount)
+                    .add("directoryCount", directoryCount)
+                    .toString();
+        }
+    }
+
+    /**
+     * The counters backing the pattern statistics.
+     */
+    private static final class Counters {
+        private final LongAdder[] patterns = newAdders(PatternType.values().length);
+
+        /**
+         * The match counts for each type followed by the number of glob evaluations.
+         */
+        private final LongAdder[] matches = newAdders(PatternType.values().length + 1);
+
+        private final LongAdder paths = new LongAdder();
+
+        private final LongAdder files = new LongAdder();
+
+        private PatternStats snapshot(long directoryCount) {
+            return new PatternStats(sum(patterns), sum(matches), paths.sum(), files.sum(), directoryCount);
+        }
+
+        private static LongAdder[] newAdders(int length) {
+            LongAdder[] adders = new LongAdder[length];
+            for (int i = 0; i < length; ++i) {
+                adders[i] = new LongAdder();
+            }
+            return adders;
+        }
+
+        private static long[] sum(LongAdder[] adders) {
+            long[] sums = new long[adders.length];
+            for (int i = 0; i < adders.length; ++i) {
+                sums[i] = adders[i].sum();
+            }
+            return sums;
+        }
+    }
+
+    /**
+     * An individual pattern, matched against the names produced by a {@link PatternList}.
+     */
+    private static class PatternPathMatcher implements Comparable<PatternPathMatcher> {
 
         private final String pattern;
 
-        private final Path directory;
+        private final CompiledFnMatch compiledPattern;
 
         private final boolean negate;
 
@@ -66,18 +228,50 @@ public class ExcludePathMatcher implements PathMatcher {
 
         private final boolean pathnameMatch;
 
-        private PatternPathMatcher(String pattern, Path directory, boolean negate, boolean directoriesOnly, boolean pathnameMatch) {
+        private final PatternType type;
+
+        /**
+         * The literal portion of the pattern, {@code null} for {@link PatternType#GLOB} patterns.
+         */
+        @Nullable
+        private final String literal;
+
+        private PatternPathMatcher(String pattern, boolean negate, boolean directoriesOnly, boolean pathnameMatch, boolean casefold) {
+            EnumSet<FnMatch.Flag> flags = EnumSet.noneOf(FnMatch.Flag.class);
+            if (pathnameMatch) {
+                flags.add(FnMatch.Flag.PATHNAME);
+            }
+            if (casefold) {
+                flags.add(FnMatch.Flag.CASEFOLD);
+            }
             this.pattern = Objects.requireNonNull(pattern);
-            this.directory = Objects.requireNonNull(directory);
+            this.compiledPattern = CompiledFnMatch.compile(pattern, flags);
             this.negate = negate;
             this.directoriesOnly = directoriesOnly;
             this.pathnameMatch = pathnameMatch;
+
+            // Classify the pattern, case folded literals are matched against case folded names
+            String folded = casefold ? CompiledFnMatch.foldCase(pattern) : pattern;
+            int last = pattern.length() - 1;
+            if (WILDCARDS.matchesNoneOf(pattern)) {
+                type = pathnameMatch ? PatternType.PATH : PatternType.NAME;
+                literal = folded;
+            } else if (!pathnameMatch && last > 0 && pattern.charAt(0) == '*' && WILDCARDS.matchesNoneOf(pattern.substring(1))) {
+                type = PatternType.SUFFIX;
+                literal = folded.substring(1);
+            } else if (!pathnameMatch && last > 0 && pattern.charAt(last) == '*' && WILDCARDS.matchesNoneOf(pattern.substring(0, last))) {
+                type = PatternType.PREFIX;
+                literal = folded.substring(0, folded.length() - 1);
+            } else {
+                type = PatternType.GLOB;
+                literal = null;
+            }
         }
 
         /**
          * Creates a new path matcher instance for the specified raw pattern.
          */
-        private static PatternPathMatcher create(String rawPattern, Path directory) {
+        private static PatternPathMatcher create(String rawPattern, boolean casefold) {
             String pattern = rawPattern;
             boolean negate = false;
             boolean directoryOnly = false;
@@ -100,12 +294,12 @@ public class ExcludePathMatcher implements PathMatcher {
             // Pathname match
             boolean pathnameMatch = pattern.indexOf('/') >= 0;
 
-            // Anchored match is covered since we keep track of the directory
+            // Anchored match is covered since patterns are matched relative to their directory
             if (pattern.charAt(0) == '/') {
                 pattern = pattern.substring(1);
             }
 
-            return new PatternPathMatcher(pattern, directory, negate, directoryOnly, pathnameMatch);
+            return new PatternPathMatcher(pattern, negate, directoryOnly, pathnameMatch, casefold);
         }
 
         @Override
@@ -115,25 +309,6 @@ public class ExcludePathMatcher implements PathMatcher {
             return Boolean.compare(other.negate, negate);
         }
 
-        @Override
-        public final boolean matches(Path path) {
-            // Relativize the path against the proper directory
-            Path relativePath = directory.relativize(path);
-
-            // Match the full path name or the name segments
-            boolean matches = false;
-            if (pathnameMatch) {
-                matches = fnmatch(pattern, ensureDelimiter(relativePath, "/"), PATHNAME);
-            } else {
-                for (int i = 0; i < relativePath.getNameCount() && !matches; ++i) {
-                    matches = fnmatch(pattern, relativePath.getName(i).toString());
-                }
-            }
-
-            // Restrict to directories if necessary
-            return matches && (!directoriesOnly || Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS));
-        }
-
         @Override
         public String toString() {
             return new StringBuilder()
@@ -141,10 +316,295 @@ public class ExcludePathMatcher implements PathMatcher {
                     .append("', negate=").append(negate)
                     .append(", dir=").append(directoriesOnly)
                     .append(", pn=").append(pathnameMatch)
+                    .append(", type=").append(type)
                     .append("}").toString();
         }
     }
 
+    /**
+     * The part of the matching state which is shared by all of the entries in a directory: the relative path name of
+     * the directory and the patterns which already match one of its names. Glob patterns are evaluated against the
+     * names lazily, so a prefix must not be shared between threads.
+     */
+    private static final class Prefix {
+
+        private static final Prefix EMPTY = new Prefix("", new String[0], new BitSet());
+
+        /**
+         * The relative path name of the directory including a trailing slash, or an empty string.
+         */
+        private final String pathname;
+
+        /**
+         * The names of the relative path of the directory.
+         */
+        private final String[] names;
+
+        private final BitSet literalMatches;
+
+        /**
+         * The glob patterns which have been evaluated against the names and the ones that matched.
+         */
+        private final BitSet globsEvaluated = new BitSet();
+
+        private final BitSet globMatches = new BitSet();
+
+        private Prefix(String pathname, String[] names, BitSet literalMatches) {
+            this.pathname = Objects.requireNonNull(pathname);
+            this.names = Objects.requireNonNull(names);
+            this.literalMatches = Objects.requireNonNull(literalMatches);
+        }
+
+        /**
+         * Tests if a glob pattern matches any of the names, evaluating it at most once for each name.
+         */
+        public boolean globMatches(int index, PatternPathMatcher matcher) {
+            if (names.length == 0) {
+                return false;
+            } else if (!globsEvaluated.get(index)) {
+                globsEvaluated.set(index);
+                for (String name : names) {
+                    if (matcher.compiledPattern.matches(name)) {
+                        globMatches.set(index);
+                        break;
+                    }
+                }
+            }
+            return globMatches.get(index);
+        }
+    }
+
+    /**
+     * An ordered list of patterns relative to the same directory, combined so the first match can be found with a
+     * single pass over the path. Patterns are grouped by {@linkplain PatternType type}: literal names, prefixes,
+     * suffixes and path names are found using hash lookups, only glob patterns are evaluated one at a time.
+     */
+    private static final class PatternList {
+
+        private final Path directory;
+
+        private final List<PatternPathMatcher> matchers;
+
+        private final Counters counters;
+
+        /**
+         * The indexes of the literal patterns of each type, keyed by the literal.
+         */
+        private final Map<String, int[]> names = new HashMap<>();
+
+        private final Map<String, int[]> prefixes = new HashMap<>();
+
+        private final Map<String, int[]> suffixes = new HashMap<>();
+
+        private final Map<String, int[]> paths = new HashMap<>();
+
+        /**
+         * The distinct lengths of the prefix and suffix literals.
+         */
+        private final int[] prefixLengths;
+
+        private final int[] suffixLengths;
+
+        /**
+         * The indexes of the glob patterns which must be evaluated individually.
+         */
+        private final int[] globs;
+
+        /**
+         * Flag indicating at least one pattern matches against the full path name.
+         */
+        private final boolean pathnameMatch;
+
+        /**
+         * Flag indicating the literals are case folded.
+         */
+        private final boolean casefold;
+
+        private PatternList(Path directory, List<PatternPathMatcher> matchers, boolean casefold, Counters counters) {
+            this.directory = Objects.requireNonNull(directory);
+            this.matchers = ImmutableList.copyOf(matchers);
+            this.casefold = casefold;
+            this.counters = Objects.requireNonNull(counters);
+            int[] globs = new int[matchers.size()];
+            int globCount = 0;
+            boolean pathnameMatch = false;
+            for (int i = 0; i < matchers.size(); ++i) {
+                PatternPathMatcher matcher = matchers.get(i);
+                switch (matcher.type) {
+                case NAME:
+                    names.merge(matcher.literal, new int[] { i }, PatternList::concat);
+                    break;
+                case PREFIX:
+                    prefixes.merge(matcher.literal, new int[] { i }, PatternList::concat);
+                    break;
+                case SUFFIX:
+                    suffixes.merge(matcher.literal, new int[] { i }, PatternList::concat);
+                    break;
+                case PATH:
+                    paths.merge(matcher.literal, new int[] { i }, PatternList::concat);
+                    break;
+                default:
+                    globs[globCount++] = i;
+                    break;
+                }
+                pathnameMatch |= matcher.pathnameMatch;
+                counters.patterns[matcher.type.ordinal()].increment();
+            }
+            this.prefixLengths = prefixes.keySet().stream().mapToInt(String::length).distinct().toArray();
+            this.suffixLengths = suffixes.keySet().stream().mapToInt(String::length).distinct().toArray();
+            this.globs = Arrays.copyOf(globs, globCount);
+            this.pathnameMatch = pathnameMatch;
+        }
+
+        /**
+         * Computes the state shared by all of the entries of a directory. Patterns are matched relative to the supplied
+         * directory (which need not be the directory of this list).
+         */
+        public Prefix prefix(Path parent, Path relativeTo) {
+            if (parent.equals(relativeTo)) {
+                return Prefix.EMPTY;
+            }
+            Path relativePath = relativeTo.relativize(parent);
+            StringBuilder pathname = new StringBuilder();
+            String[] names = new String[relativePath.getNameCount()];
+            BitSet literalMatches = new BitSet();
+            for (int i = 0; i < names.length; ++i) {
+                names[i] = relativePath.getName(i).toString();
+                pathname.append(names[i]).append('/');
+                setLiteralMatches(literalMatches, casefold ? CompiledFnMatch.foldCase(names[i]) : names[i]);
+            }
+            return new Prefix(pathname.toString(), names, literalMatches);
+        }
+
+        /**
+         * Returns the first pattern in the list which matches the named entry of the supplied directory, or
+         * {@code null} if nothing matches. If the attributes of the entry are not supplied they are only read if a
+         * directory-only pattern matches.
+         */
+        @Nullable
+        public PatternPathMatcher firstMatch(Prefix prefix, Path parent, String name, @Nullable BasicFileAttributes attrs) {
+            if (matchers.isEmpty()) {
+                return null;
+            }
+            counters.paths.increment();
+            String pathname = pathnameMatch ? prefix.pathname + name : null;
+
+            // Collect the literal patterns which match the path
+            BitSet literalMatches = (BitSet) prefix.literalMatches.clone();
+            String foldedName = casefold ? CompiledFnMatch.foldCase(name) : name;
+            setLiteralMatches(literalMatches, foldedName);
+            if (!paths.isEmpty()) {
+                set(literalMatches, paths.get(casefold ? CompiledFnMatch.foldCase(pathname) : pathname));
+            }
+
+            // Merge the literal matches with the glob patterns, maintaining the order
+            Boolean isDirectory = attrs != null ? attrs.isDirectory() : null;
+            int literal = literalMatches.nextSetBit(0);
+            int glob = 0;
+            while (literal >= 0 || glob < globs.length) {
+                PatternPathMatcher matcher;
+                if (literal >= 0 && (glob == globs.length || literal < globs[glob])) {
+                    matcher = matchers.get(literal);
+                    literal = literalMatches.nextSetBit(literal + 1);
+                } else {
+                    int index = globs[glob++];
+                    matcher = matchers.get(index);
+                    counters.matches[PatternType.values().length].increment();
+                    if (matcher.pathnameMatch ? !matcher.compiledPattern.matches(pathname)
+                            : !prefix.globMatches(index, matcher) && !matcher.compiledPattern.matches(name)) {
+                        continue;
+                    }
+                }
+
+                // Restrict to directories if necessary
+                if (matcher.directoriesOnly && isDirectory == null) {
+                    isDirectory = Files.isDirectory(parent.resolve(name), LinkOption.NOFOLLOW_LINKS);
+                }
+                if (!matcher.directoriesOnly || isDirectory) {
+                    counters.matches[matcher.type.ordinal()].increment();
+                    return matcher;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Sets the indexes of the name, prefix and suffix patterns matching the supplied (case folded) name.
+         */
+        private void setLiteralMatches(BitSet literalMatches, String name) {
+            set(literalMatches, names.get(name));
+            for (int length : prefixLengths) {
+                if (length <= name.length()) {
+                    set(literalMatches, prefixes.get(name.substring(0, length)));
+                }
+            }
+            for (int length : suffixLengths) {
+                if (length <= name.length()) {
+                    set(literalMatches, suffixes.get(name.substring(name.length() - length)));
+                }
+            }
+        }
+
+        private static void set(BitSet bits, @Nullable int[] indexes) {
+            if (indexes != null) {
+                for (int index : indexes) {
+                    bits.set(index);
+                }
+            }
+        }
+
+        private static int[] concat(int[] first, int[] second) {
+            int[] result = Arrays.copyOf(first, first.length + second.length);
+            System.arraycopy(second, 0, result, first.length, second.length);
+            return result;
+        }
+    }
+
+    /**
+     * The patterns read from the exclude-per-directory files of a single directory. The rules are linked to the rules
+     * of the parent directory so the files in each directory only need to be read once.
+     */
+    private static final class DirectoryRules {
+
+        private final PatternList patterns;
+
+        @Nullable
+        private final DirectoryRules parent;
+
+        /**
+         * Flag indicating at least one of the patterns is negated.
+         */
+        private final boolean negations;
+
+        private DirectoryRules(PatternList patterns, @Nullable DirectoryRules parent) {
+            this.patterns = Objects.requireNonNull(patterns);
+            this.parent = parent;
+            this.negations = patterns.matchers.stream().anyMatch(m -> m.negate);
+        }
+
+        /**
+         * Returns the first pattern matching the supplied path, or {@code null} if nothing matches. The patterns of
+         * this directory are considered before the patterns of the parent directories, however negated patterns from
+         * any directory take precedence.
+         */
+        @Nullable
+        public PatternPathMatcher firstMatch(Path parent, String name, @Nullable BasicFileAttributes attrs) {
+            // Patterns from all levels are matched relative to the immediate parent of the path
+            PatternPathMatcher result = null;
+            for (DirectoryRules rules = this; rules != null; rules = rules.parent) {
+                if (result == null || rules.negations) {
+                    PatternPathMatcher matcher = rules.patterns.firstMatch(Prefix.EMPTY, parent, name, attrs);
+                    if (matcher != null && matcher.negate) {
+                        return matcher;
+                    } else if (result == null) {
+                        result = matcher;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
     /**
      * The top directory this filter matches against. This is how paths are relativized, so the filter will not be able
      * to match paths outside this hierarchy.
@@ -163,31 +623,93 @@ public class ExcludePathMatcher implements PathMatcher {
     private final List<String> excludePerDirectoryNames;
 
     /**
-     * The list of path matchers for this filter.
+     * The path matchers for this filter.
      */
-    private final List<PatternPathMatcher> matchers;
+    private final PatternList matchers;
+
+    /**
+     * A cache of lazily loaded per-directory rules, entries are invalidated once a directory has been visited.
+     */
+    private final LoadingCache<Path, DirectoryRules> directoryRules;
+
+    private final long directoryCacheSize;
 
     /**
-     * A mapping of lazily computed per-directory path matchers.
+     * Flag indicating patterns are matched without regard to case.
      */
-    private final Map<Path, List<PatternPathMatcher>> perDirectoryMatchers = new ConcurrentHashMap<>();
+    private final boolean casefold;
+
+    /**
+     * The lines to use in place of the contents of specific exclude-per-directory files.
+     */
+    private final Map<Path, List<String>> directoryFileOverrides;
+
+    /**
+     * The counters for the pattern statistics.
+     */
+    private final Counters counters = new Counters();
 
     private ExcludePathMatcher(Builder builder) {
         top = Objects.requireNonNull(builder.top);
         patternNormalizer = Objects.requireNonNull(builder.patternNormalizer);
         excludePerDirectoryNames = ImmutableList.copyOf(builder.excludePerDirectoryNames);
+        directoryCacheSize = builder.directoryCacheSize;
+        casefold = builder.casefold;
+        directoryFileOverrides = ImmutableMap.of();
+        directoryRules = newDirectoryRulesCache();
 
         // Previously we respected the addition order between patterns and files, this would
         // require reading file patterns in the builder if we were to bring that behavior back
-        matchers = Stream.concat(builder.patterns.stream(), builder.files.stream().flatMap(ExcludePathMatcher::readAllLines))
+        matchers = new PatternList(top, Stream.concat(builder.patterns.stream(), builder.files.stream().flatMap(ExcludePathMatcher::readAllLines))
                 .flatMap(patternNormalizer)
-                .map(pattern -> PatternPathMatcher.create(pattern, top))
+                .map(pattern -> PatternPathMatcher.create(pattern, casefold))
                 .sorted()
-                .collect(toImmutableList());
+                .collect(toImmutableList()), casefold, counters);
+    }
+
+    private ExcludePathMatcher(ExcludePathMatcher matcher, Map<Path, List<String>> directoryFileOverrides) {
+        top = matcher.top;
+        patternNormalizer = matcher.patternNormalizer;
+        excludePerDirectoryNames = matcher.excludePerDirectoryNames;
+        directoryCacheSize = matcher.directoryCacheSize;
+        casefold = matcher.casefold;
+        this.directoryFileOverrides = ImmutableMap.copyOf(directoryFileOverrides);
+        directoryRules = newDirectoryRulesCache();
+
+        // Do not share the pattern list, it records statistics into the counters of the original matcher
+        matchers = new PatternList(top, matcher.matchers.matchers, casefold, counters);
+    }
+
+    private LoadingCache<Path, DirectoryRules> newDirectoryRulesCache() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(directoryCacheSize)
+                .recordStats()
+                .build(CacheLoader.from(this::loadDirectoryRules));
+    }
+
+    /**
+     * Returns a snapshot of the statistics for the patterns used by this matcher. The statistics can be used to
+     * determine how much of the matching is done using hash lookups instead of evaluating glob patterns.
+     */
+    public PatternStats patternStats() {
+        return counters.snapshot(directoryRules.size());
     }
 
     @Override
     public boolean matches(Path path) {
+        return isIncluded(path, null);
+    }
+
+    /**
+     * Tells if the supplied path is included, using the supplied attributes instead of reading them from the file
+     * system for directory-only patterns.
+     */
+    @Override
+    public boolean matches(Path path, BasicFileAttributes attrs) {
+        return isIncluded(path, Objects.requireNonNull(attrs));
+    }
+
+    private boolean isIncluded(Path path, @Nullable BasicFileAttributes attrs) {
         if (!path.startsWith(top)) {
             // We can only match within the top directory
             return false;
@@ -196,19 +718,61 @@ public class ExcludePathMatcher implements PathMatcher {
             return true;
         }
 
-        // If a top level matcher matches, the path is excluded
-        for (PatternPathMatcher matcher : matchers) {
-            if (matcher.matches(path)) {
-                return matcher.negate;
+        Path parent = path.getParent();
+        return isIncluded(matchers.prefix(parent, top), () -> directoryRulesIfPresent(parent), parent, path.getFileName().toString(), attrs);
+    }
+
+    /**
+     * Tests all of the entries of a directory listing at once, setting the corresponding bit of the output for each
+     * entry which is included and clearing it otherwise. This is equivalent to calling {@link #matches(Path)} with
+     * each resolved entry, however the work that depends only on the directory is done once.
+     */
+    public void matchAll(Path directory, List<String> names, BitSet out) {
+        includeAll(directory, names, null, out);
+    }
+
+    /**
+     * Tests all of the entries of a directory listing at once using the supplied attributes of each entry.
+     *
+     * @see #matchAll(Path, List, BitSet)
+     * @see #matches(Path, BasicFileAttributes)
+     */
+    public void matchAll(Path directory, List<String> names, List<? extends BasicFileAttributes> attrs, BitSet out) {
+        checkArgument(attrs.size() == names.size(), "expected %s attributes: %s", names.size(), attrs.size());
+        includeAll(directory, names, attrs, out);
+    }
+
+    private void includeAll(Path directory, List<String> names, @Nullable List<? extends BasicFileAttributes> attrs, BitSet out) {
+        if (!directory.startsWith(top)) {
+            // Nothing to share, this is just for completeness
+            for (int i = 0; i < names.size(); ++i) {
+                out.set(i, isIncluded(directory.resolve(names.get(i)), attrs != null ? attrs.get(i) : null));
             }
+            return;
+        }
+
+        Prefix prefix = matchers.prefix(directory, top);
+        // Only load the exclude-per-directory rules if a top level matcher does not decide one of the entries
+        Supplier<DirectoryRules> rules = Suppliers.memoize(() -> directoryRulesIfPresent(directory));
+        for (int i = 0; i < names.size(); ++i) {
+            out.set(i, isIncluded(prefix, rules, directory, names.get(i), attrs != null ? attrs.get(i) : null));
+        }
+    }
+
+    private boolean isIncluded(Prefix prefix, Supplier<DirectoryRules> directoryRules, Path parent, String name,
+            @Nullable BasicFileAttributes attrs) {
+        // If a top level matcher matches, the path is excluded
+        PatternPathMatcher matcher = matchers.firstMatch(prefix, parent, name, attrs);
+        if (matcher != null) {
+            return matcher.negate;
         }
 
         // If an ignore file is present evaluate that
-        if (!excludePerDirectoryNames.isEmpty()) {
-            for (PatternPathMatcher matcher : perDirectoryMatchers.computeIfAbsent(path.getParent(), this::directoryMatchers)) {
-                if (matcher.matches(path)) {
-                    return matcher.negate;
-                }
+        DirectoryRules rules = directoryRules.get();
+        if (rules != null) {
+            matcher = rules.firstMatch(parent, name, attrs);
+            if (matcher != null) {
+                return matcher.negate;
             }
         }
 
@@ -216,31 +780,100 @@ public class ExcludePathMatcher implements PathMatcher {
     }
 
     /**
-     * Computes the list of pattern path matchers based on the exclude-per-directory rules.
+     * Discards the cached exclude-per-directory rules for the supplied directory. The rules for a directory are only
+     * needed while its subtree is being visited; this is called automatically from
+     * {@link ExtraFileVisitors#filter(java.nio.file.FileVisitor, PathMatcher)} once a directory has been visited.
      */
-    private List<PatternPathMatcher> directoryMatchers(Path directory) {
-        return readDirectoryPatterns(top, excludePerDirectoryNames, directory)
-                .flatMap(patternNormalizer)
-                .map(pattern -> PatternPathMatcher.create(pattern, directory))
-                .sorted()
-                .collect(collectingAndThen(toList(), Collections::unmodifiableList));
+    public void invalidate(Path directory) {
+        directoryRules.invalidate(directory);
+    }
+
+    /**
+     * Discards the cached exclude-per-directory rules for the supplied directory and all of its descendants.
+     */
+    void invalidateAll(Path directory) {
+        directoryRules.asMap().keySet().removeIf(d -> d.startsWith(directory));
+    }
+
+    /**
+     * Returns a copy of this matcher which uses the supplied lines in place of the contents of specific
+     * exclude-per-directory files. An empty list is equivalent to a missing file.
+     */
+    ExcludePathMatcher withDirectoryFiles(Map<Path, List<String>> directoryFileOverrides) {
+        return new ExcludePathMatcher(this, directoryFileOverrides);
+    }
+
+    /**
+     * Returns the top directory of this matcher.
+     */
+    Path top() {
+        return top;
     }
 
     /**
-     * Recursively read all of the patterns from all of the exclude-per-directory files.
+     * Returns the names of the exclude-per-directory files.
      */
-    private static Stream<String> readDirectoryPatterns(Path top, List<String> excludePerDirectoryNames, Path directory) {
-        Stream<String> patterns = excludePerDirectoryNames.stream()
+    List<String> excludePerDirectoryNames() {
+        return excludePerDirectoryNames;
+    }
+
+    /**
+     * Returns a snapshot of the statistics for the cache of exclude-per-directory rules.
+     */
+    public CacheStats directoryCacheStats() {
+        return directoryRules.stats();
+    }
+
+    /**
+     * Returns the exclude-per-directory rules for the supplied directory, {@code null} if there are no
+     * exclude-per-directory files.
+     */
+    @Nullable
+    private DirectoryRules directoryRulesIfPresent(Path directory) {
+        return excludePerDirectoryNames.isEmpty() ? null : directoryRules(directory);
+    }
+
+    /**
+     * Returns the exclude-per-directory rules for the supplied directory.
+     */
+    private DirectoryRules directoryRules(Path directory) {
+        try {
+            return directoryRules.getUnchecked(directory);
+        } catch (UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the exclude-per-directory files from a single directory, the rules of the parent directories are loaded
+     * recursively up to the top directory.
+     */
+    private DirectoryRules loadDirectoryRules(Path directory) {
+        PatternList patterns = excludePerDirectoryNames.stream()
                 .map(directory::resolve)
-                .filter(Files::exists)
-                .flatMap(ExcludePathMatcher::readAllLines);
+                .flatMap(this::readDirectoryFile)
+                .flatMap(patternNormalizer)
+                .map(pattern -> PatternPathMatcher.create(pattern, casefold))
+                .sorted()
+                .collect(collectingAndThen(toList(), matchers -> new PatternList(directory, matchers, casefold, counters)));
 
-        // Recursively load parent patterns up to the root
         Path parent = directory.getParent();
-        if (parent != null && parent.startsWith(top)) {
-            return Stream.concat(patterns, readDirectoryPatterns(top, excludePerDirectoryNames, parent));
+        return new DirectoryRules(patterns, parent != null && parent.startsWith(top) ? directoryRules(parent) : null);
+    }
+
+    /**
+     * Reads the lines of an exclude-per-directory file, a missing file has no lines.
+     */
+    private Stream<String> readDirectoryFile(Path file) {
+        List<String> lines = directoryFileOverrides.get(file);
+        if (lines != null) {
+            return lines.stream();
+        } else if (Files.exists(file)) {
+            counters.files.increment();
+            return readAllLines(file);
         } else {
-            return patterns;
+            return Stream.empty();
         }
     }
 
@@ -303,7 +936,12 @@ public class ExcludePathMatcher implements PathMatcher {
 
         private final List<String> excludePerDirectoryNames = new ArrayList<>();
 
+        private long directoryCacheSize;
+
+        private boolean casefold;
+
         public Builder() {
+            directoryCacheSize = 1024L;
             top = Paths.get(System.getProperty("user.dir"));
             patternNormalizer = ExcludePathMatcher::defaultPatternNormalizer;
         }
@@ -334,6 +972,25 @@ public class ExcludePathMatcher implements PathMatcher {
             return this;
         }
 
+        /**
+         * Match patterns without regard to case, e.g. for case insensitive file systems.
+         */
+        public Builder ignoringCase() {
+            casefold = true;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of directories whose exclude-per-directory rules are cached. Loading the rules of a
+         * directory requires the rules of all of its ancestors, so the cache should be at least as large as the depth of
+         * the tree.
+         */
+        public Builder directoryCacheSize(long directoryCacheSize) {
+            checkArgument(directoryCacheSize > 0L, "directoryCacheSize must be positive: %s", directoryCacheSize);
+            this.directoryCacheSize = directoryCacheSize;
+            return this;
+        }
+
         /**
          * Creates a new exclusion rule based path matcher.
          */
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.nio.file;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Watches the exclude-per-directory files used by an {@link ExcludePathMatcher} so a long running process can keep
+ * using the same matcher as the files are edited. When an exclude file changes only the rules of the affected
+ * directory (and its descendants) are discarded, and the subtree is checked to find the paths whose state changed
+ * from excluded to included or vice versa; only those paths need to be rescanned.
+ * <p>
+ * Directories must be registered to be watched, typically by calling {@link #registerTree(Path)} with the top
+ * directory of the matcher. Included directories created in a registered directory, or which become included after
+ * an exclude file is edited, are registered automatically; directories which become excluded are no longer watched.
+ * <p>
+ * This class is not safe for use by multiple concurrent threads, however the matcher may be used concurrently.
+ *
+ * @author jgustie
+ */
+public final class ExcludeRulesWatcher implements Closeable {
+
+    /**
+     * A path whose state changed as the result of an edit to an exclude file. If the path is a directory, the state of
+     * the entire subtree changed.
+     */
+    public static final class Change {
+
+        private final Path path;
+
+        private final boolean included;
+
+        private Change(Path path, boolean included) {
+            this.path = Objects.requireNonNull(path);
+            this.included = included;
+        }
+
+        /**
+         * Returns the path whose state changed.
+         */
+        public Path path() {
+            return path;
+        }
+
+        /**
+         * Returns {@code true} if the path was previously excluded and is now included, {@code false} if it was
+         * previously included and is now excluded.
+         */
+        public boolean isIncluded() {
+            return included;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("path", path)
+                    .add("included", included)
+                    .toString();
+        }
+    }
+
+    private final ExcludePathMatcher matcher;
+
+    private final WatchService watchService;
+
+    /**
+     * The registered directories.
+     */
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    /**
+     * The last known contents of the exclude files in the registered directories, missing files are not included.
+     */
+    private final Map<Path, List<String>> files = new HashMap<>();
+
+    /**
+     * Creates a new watcher using a watch service from the file system of the matcher's top directory.
+     */
+    public ExcludeRulesWatcher(ExcludePathMatcher matcher) throws IOException {
+        this.matcher = Objects.requireNonNull(matcher);
+        watchService = matcher.top().getFileSystem().newWatchService();
+    }
+
+    /**
+     * Registers a single directory to be watched.
+     */
+    public void register(Path directory) throws IOException {
+        directories.put(directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), directory);
+        files.putAll(readExcludeFiles(directory));
+    }
+
+    /**
+     * Registers a directory and all of the included directories beneath it.
+     */
+    public void registerTree(Path start) throws IOException {
+        Files.walkFileTree(start, ExtraFileVisitors.filter(new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                register(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        }, matcher));
+    }
+
+    /**
+     * Processes any pending events without waiting, returning the changes.
+     */
+    public List<Change> poll() throws IOException {
+        List<Change> changes = new ArrayList<>();
+        for (WatchKey key = watchService.poll(); key != null; key = watchService.poll()) {
+            process(key, changes);
+        }
+        return changes;
+    }
+
+    /**
+     * Processes pending events, waiting if none are present. The returned list is empty if the events did not change
+     * the state of any path or if the timeout elapsed.
+     */
+    public List<Change> poll(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        WatchKey key = watchService.poll(timeout, unit);
+        if (key == null) {
+            return Collections.emptyList();
+        }
+        List<Change> changes = new ArrayList<>();
+        process(key, changes);
+        changes.addAll(poll());
+        return changes;
+    }
+
+    /**
+     * Processes pending events, waiting until at least one is present. The returned list is empty if the events did
+     * not change the state of any path.
+     */
+    public List<Change> take() throws IOException, InterruptedException {
+        List<Change> changes = new ArrayList<>();
+        process(watchService.take(), changes);
+        changes.addAll(poll());
+        return changes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void process(WatchKey key, List<Change> changes) throws IOException {
+        Path directory = directories.get(key);
+        if (directory == null) {
+            key.cancel();
+            return;
+        }
+
+        boolean reload = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                // We do not know what changed, just check the exclude files
+                reload = true;
+            } else if (matcher.excludePerDirectoryNames().contains(event.context().toString())) {
+                reload = true;
+            } else if (event.kind() == ENTRY_CREATE) {
+                Path child = directory.resolve((Path) event.context());
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS) && matcher.matches(child)) {
+                    registerTree(child);
+                }
+            }
+        }
+
+        if (!key.reset()) {
+            // The directory is no longer accessible
+            directories.remove(key);
+            files.keySet().removeIf(file -> file.getParent().equals(directory));
+        } else if (reload) {
+            reload(directory, changes);
+        }
+    }
+
+    /**
+     * Compares the exclude files in the supplied directory with their last known contents and checks for changes in
+     * the directory's subtree.
+     */
+    private void reload(Path directory, List<Change> changes) throws IOException {
+        Map<Path, List<String>> current = readExcludeFiles(directory);
+        Map<Path, List<String>> previous = new HashMap<>();
+        for (String name : matcher.excludePerDirectoryNames()) {
+            Path file = directory.resolve(name);
+            previous.put(file, files.getOrDefault(file, Collections.emptyList()));
+            current.putIfAbsent(file, Collections.emptyList());
+        }
+        if (previous.equals(current)) {
+            return;
+        }
+
+        // Evaluate the subtree using a matcher that still sees the previous file contents
+        int firstChange = changes.size();
+        ExcludePathMatcher previousMatcher = matcher.withDirectoryFiles(previous);
+        matcher.invalidateAll(directory);
+        current.forEach((file, lines) -> {
+            if (lines.isEmpty()) {
+                files.remove(file);
+            } else {
+                files.put(file, lines);
+            }
+        });
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                // Directories whose state changed (or are excluded either way) do not need to be checked further
+                return dir.equals(directory) || check(dir, attrs) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                check(file, attrs);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                // Ignore files which are modified while we are checking them
+                return FileVisitResult.CONTINUE;
+            }
+
+            private boolean check(Path path, BasicFileAttributes attrs) {
+                boolean included = matcher.matches(path, attrs);
+                if (previousMatcher.matches(path, attrs) != included) {
+                    changes.add(new Change(path, included));
+                    return false;
+                }
+                return included;
+            }
+        });
+        matcher.invalidateAll(directory);
+
+        // Start watching directories that are now included, stop watching the ones that are now excluded
+        for (Change change : changes.subList(firstChange, changes.size())) {
+            if (change.isIncluded()) {
+                if (Files.isDirectory(change.path(), LinkOption.NOFOLLOW_LINKS)) {
+                    registerTree(change.path());
+                }
+            } else {
+                unregisterTree(change.path());
+            }
+        }
+    }
+
+    /**
+     * Stops watching a directory and all of the directories beneath it.
+     */
+    private void unregisterTree(Path start) {
+        Iterator<Map.Entry<WatchKey, Path>> entries = directories.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<WatchKey, Path> entry = entries.next();
+            if (entry.getValue().startsWith(start)) {
+                entry.getKey().cancel();
+                entries.remove();
+            }
+        }
+        files.keySet().removeIf(file -> file.getParent().startsWith(start));
+    }
+
+    /**
+     * Reads the exclude files present in the supplied directory.
+     */
+    private Map<Path, List<String>> readExcludeFiles(Path directory) throws IOException {
+        Map<Path, List<String>> result = new HashMap<>();
+        for (String name : matcher.excludePerDirectoryNames()) {
+            Path file = directory.resolve(name);
+            try {
+                result.put(file, Files.readAllLines(file, Charset.defaultCharset()));
+            } catch (NoSuchFileException e) {
+                // A missing file does not contribute any patterns
+            }
+        }
+        return result;
+    }
+
+}
@@ -143,22 +143,43 @@ public class ExtraFileVisitors {
     }
 
     /**
-     * Modifies a file visitor so that visits are filtered by the supplied path matcher.
+     * Modifies a file visitor so that visits are filtered by the supplied path matcher. If the matcher is an
+     * {@link AttributesPathMatcher} it is supplied the attributes of each visited path.
      */
     public static FileVisitor<Path> filter(FileVisitor<Path> visitor, PathMatcher matcher) {
         return new ForwardingFileVisitor<Path>(visitor) {
             @Override
             public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                return matcher.matches(dir) ? super.preVisitDirectory(dir, attrs) : FileVisitResult.SKIP_SUBTREE;
+                return matches(matcher, dir, attrs) ? super.preVisitDirectory(dir, attrs) : FileVisitResult.SKIP_SUBTREE;
             }
 
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                return matcher.matches(file) ? super.visitFile(file, attrs) : FileVisitResult.CONTINUE;
+                return matches(matcher, file, attrs) ? super.visitFile(file, attrs) : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (matcher instanceof ExcludePathMatcher) {
+                    // The exclude rules for this directory will not be needed again
+                    ((ExcludePathMatcher) matcher).invalidate(dir);
+                }
+                return super.postVisitDirectory(dir, exc);
             }
         };
     }
 
+    /**
+     * Matches a path using the attributes supplied to the visitor if the matcher supports it.
+     */
+    private static boolean matches(PathMatcher matcher, Path path, BasicFileAttributes attrs) {
+        if (matcher instanceof AttributesPathMatcher) {
+            return ((AttributesPathMatcher) matcher).matches(path, attrs);
+        } else {
+            return matcher.matches(path);
+        }
+    }
+
     private ExtraFileVisitors() {
         assert false;
     }
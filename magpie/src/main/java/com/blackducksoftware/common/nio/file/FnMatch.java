@@ -80,7 +80,7 @@ class FnMatch {
 
         while (true) {
             if (patternPos >= pattern.length()) {
-                if (flags.contains(Flag.LEADING_DIR) && string.charAt(stringPos) == '/') {
+                if (flags.contains(Flag.LEADING_DIR) && stringPos < string.length() && string.charAt(stringPos) == '/') {
                     return true;
                 }
                 return stringPos == string.length();
@@ -229,17 +229,15 @@ class FnMatch {
          * -- POSIX.2 2.8.3.2
          */
         ok = false;
-        while (true) {
-            if (patternPos >= pattern.length()) {
-                return RANGE_ERROR;
-            }
-
-            c = pattern.charAt(patternPos++);
-            if (c == ']') {
-                break;
-            }
-
+        if (patternPos >= pattern.length()) {
+            return RANGE_ERROR;
+        }
+        c = pattern.charAt(patternPos++);
+        do {
             if (c == '\\' && !flags.contains(Flag.NOESCAPE)) {
+                if (patternPos >= pattern.length()) {
+                    return RANGE_ERROR;
+                }
                 c = pattern.charAt(patternPos++);
             }
             if (c == '/' && flags.contains(Flag.PATHNAME)) {
@@ -248,15 +246,15 @@ class FnMatch {
             if (flags.contains(Flag.CASEFOLD)) {
                 c = Character.toLowerCase(c);
             }
-            if (pattern.charAt(patternPos) == '-' &&
-                    patternPos + 1 < pattern.length() &&
+            if (patternPos + 1 < pattern.length() &&
+                    pattern.charAt(patternPos) == '-' &&
                     (c2 = pattern.charAt(patternPos + 1)) != ']') {
                 patternPos += 2;
                 if (c2 == '\\' && !flags.contains(Flag.NOESCAPE)) {
                     if (patternPos >= pattern.length()) {
                         return RANGE_ERROR;
                     }
-                    c = pattern.charAt(patternPos++);
+                    c2 = pattern.charAt(patternPos++);
                 }
                 if (flags.contains(Flag.CASEFOLD)) {
                     c2 = Character.toLowerCase(c2);
@@ -267,7 +265,10 @@ class FnMatch {
             } else if (c == test) {
                 ok = true;
             }
-        }
+            if (patternPos >= pattern.length()) {
+                return RANGE_ERROR;
+            }
+        } while ((c = pattern.charAt(patternPos++)) != ']');
 
         return ok == negate ? RANGE_NOMATCH : patternPos;
     }
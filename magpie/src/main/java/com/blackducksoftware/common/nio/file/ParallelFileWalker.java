@@ -0,0 +1,471 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.nio.file;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * A file tree walker which lists directories concurrently using a {@link ForkJoinPool}. This is useful when walking
+ * file systems where the time to list a directory is dominated by latency (e.g. network file systems).
+ * <p>
+ * The walker has the same behavior as {@link Files#walkFileTree(Path, FileVisitor)} except that the visitor is invoked
+ * concurrently from multiple threads: a directory is only visited after its parent has been pre-visited and it is
+ * only post-visited after all of its entries have been visited, but there is no ordering between siblings. Returning
+ * {@link FileVisitResult#SKIP_SUBTREE} from {@code preVisitDirectory} prunes the directory before it is listed;
+ * {@link FileVisitResult#SKIP_SIBLINGS} is treated the same as {@code SKIP_SUBTREE} and
+ * {@link FileVisitResult#TERMINATE} stops the walk as soon as possible.
+ *
+ * @author jgustie
+ */
+public final class ParallelFileWalker {
+
+    /**
+     * Orders paths so that each directory is immediately followed by its descendants, the entries of a directory are
+     * ordered by name.
+     */
+    private static final Comparator<Path> PRE_ORDER = (left, right) -> {
+        Iterator<Path> l = left.iterator();
+        Iterator<Path> r = right.iterator();
+        while (l.hasNext() && r.hasNext()) {
+            int c = l.next().compareTo(r.next());
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Boolean.compare(l.hasNext(), r.hasNext());
+    };
+
+    /**
+     * The maximum number of paths buffered by an unordered stream.
+     */
+    private static final int STREAM_CAPACITY = 1024;
+
+    /**
+     * The end-of-stream marker for the buffered paths.
+     */
+    private static final Object END = new Object();
+
+    private final Path start;
+
+    @Nullable
+    private final PathMatcher filter;
+
+    private final int parallelism;
+
+    @Nullable
+    private final ForkJoinPool pool;
+
+    private final boolean ordered;
+
+    private ParallelFileWalker(Builder builder) {
+        start = Objects.requireNonNull(builder.start);
+        filter = builder.filter;
+        parallelism = builder.parallelism;
+        pool = builder.pool;
+        ordered = builder.ordered;
+    }
+
+    /**
+     * Walks the file tree, invoking the supplied visitor for each file and directory which is not excluded by the
+     * filter. The visitor must be safe for use by multiple concurrent threads.
+     *
+     * @throws IOException
+     *             if the visitor throws an I/O exception
+     */
+    public void walk(FileVisitor<Path> visitor) throws IOException {
+        Walk walk = newWalk(visitor);
+        if (pool != null) {
+            pool.invoke(walk.new StartTask(start));
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(walk.new StartTask(start));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        IOException failure = walk.failure.get();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Walks the file tree and returns all of the files and directories which are not excluded by the filter.
+     * <p>
+     * If this walker is not ordered the paths are produced lazily in an undefined order: the walk runs in the
+     * background while the stream is consumed, buffering a limited number of paths. The returned stream should be
+     * closed to stop the walk if it is not fully consumed. If a directory cannot be read, an
+     * {@link UncheckedIOException} is thrown from the stream operation that encountered the end of the walk; unchecked
+     * exceptions from the visitor or filter are rethrown in the same way.
+     * <p>
+     * If this walker is ordered the paths are returned with each directory immediately followed by its descendants;
+     * the entire tree is collected and sorted before this method returns.
+     *
+     * @throws IOException
+     *             if a directory of an ordered walk cannot be read
+     */
+    public Stream<Path> stream() throws IOException {
+        return ordered ? orderedStream() : unorderedStream();
+    }
+
+    private Stream<Path> unorderedStream() {
+        QueueingVisitor visitor = new QueueingVisitor();
+        Walk walk = newWalk(visitor);
+        AtomicReference<RuntimeException> unchecked = new AtomicReference<>();
+        ForkJoinPool pool = this.pool != null ? this.pool : new ForkJoinPool(parallelism);
+        try {
+            pool.execute(() -> {
+                try {
+                    walk.new StartTask(start).invoke();
+                } catch (RuntimeException e) {
+                    // Stop any remaining tasks, the exception is rethrown by the consumer
+                    walk.terminated = true;
+                    unchecked.set(e);
+                } finally {
+                    visitor.offer(END);
+                }
+            });
+        } finally {
+            if (this.pool == null) {
+                // Tasks which were already submitted (and their forks) still run
+                pool.shutdown();
+            }
+        }
+
+        Iterator<Path> paths = new AbstractIterator<Path>() {
+            @Override
+            protected Path computeNext() {
+                Object next = Uninterruptibles.takeUninterruptibly(visitor.queue);
+                if (next == END) {
+                    RuntimeException e = unchecked.get();
+                    if (e != null) {
+                        visitor.close();
+                        throw e;
+                    }
+                    IOException failure = walk.failure.get();
+                    if (failure != null) {
+                        throw new UncheckedIOException(failure);
+                    }
+                    return endOfData();
+                }
+                return (Path) next;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(paths, Spliterator.DISTINCT | Spliterator.NONNULL), false)
+                .onClose(visitor::close);
+    }
+
+    private Stream<Path> orderedStream() throws IOException {
+        Queue<Path> paths = new ConcurrentLinkedQueue<>();
+        walk(new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                paths.add(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                paths.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Path[] result = paths.toArray(new Path[paths.size()]);
+        Arrays.sort(result, PRE_ORDER);
+        return Arrays.stream(result);
+    }
+
+    private Walk newWalk(FileVisitor<Path> visitor) {
+        return new Walk(filter != null ? ExtraFileVisitors.filter(visitor, filter) : visitor);
+    }
+
+    /**
+     * A visitor which feeds the visited paths to a bounded queue. Once the consumer closes the queue, the walk is
+     * terminated.
+     */
+    private static final class QueueingVisitor extends SimpleFileVisitor<Path> {
+
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(STREAM_CAPACITY);
+
+        private volatile boolean closed;
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            return offer(dir);
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            return offer(file);
+        }
+
+        /**
+         * Waits for space in the queue, giving up if the queue is closed.
+         */
+        private FileVisitResult offer(Object path) {
+            try {
+                while (!closed) {
+                    if (queue.offer(path, 10L, TimeUnit.MILLISECONDS)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return FileVisitResult.TERMINATE;
+        }
+
+        private void close() {
+            closed = true;
+            queue.clear();
+        }
+    }
+
+    /**
+     * The state of a single walk.
+     */
+    private static final class Walk {
+
+        private final FileVisitor<Path> visitor;
+
+        /**
+         * The first failure, if any. Once set (or after the visitor terminates the walk) no new work is started.
+         */
+        private final AtomicReference<IOException> failure = new AtomicReference<>();
+
+        private volatile boolean terminated;
+
+        private Walk(FileVisitor<Path> visitor) {
+            this.visitor = Objects.requireNonNull(visitor);
+        }
+
+        /**
+         * Visits the starting path, which may be a file.
+         */
+        private final class StartTask extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            private final Path start;
+
+            private StartTask(Path start) {
+                this.start = start;
+            }
+
+            @Override
+            protected void compute() {
+                try {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(start, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        checkResult(visitor.visitFileFailed(start, e));
+                        return;
+                    }
+                    if (!attrs.isDirectory()) {
+                        checkResult(visitor.visitFile(start, attrs));
+                    } else if (checkResult(visitor.preVisitDirectory(start, attrs))) {
+                        new DirectoryTask(start).compute();
+                    }
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        }
+
+        /**
+         * Lists a directory which has already been pre-visited, visiting the files and forking a new task for each
+         * sub-directory.
+         */
+        private final class DirectoryTask extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            private final Path dir;
+
+            private DirectoryTask(Path dir) {
+                this.dir = dir;
+            }
+
+            @Override
+            protected void compute() {
+                try {
+                    IOException exc = null;
+                    List<DirectoryTask> subdirectories = new ArrayList<>();
+                    try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                        for (Path entry : entries) {
+                            if (isDone()) {
+                                break;
+                            }
+                            BasicFileAttributes attrs;
+                            try {
+                                attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                            } catch (IOException e) {
+                                checkResult(visitor.visitFileFailed(entry, e));
+                                continue;
+                            }
+                            if (!attrs.isDirectory()) {
+                                checkResult(visitor.visitFile(entry, attrs));
+                            } else if (checkResult(visitor.preVisitDirectory(entry, attrs))) {
+                                DirectoryTask task = new DirectoryTask(entry);
+                                task.fork();
+                                subdirectories.add(task);
+                            }
+                        }
+                    } catch (DirectoryIteratorException e) {
+                        exc = e.getCause();
+                    } catch (IOException e) {
+                        exc = e;
+                    }
+
+                    // The directory cannot be post-visited until the entire subtree is finished
+                    for (DirectoryTask task : subdirectories) {
+                        task.join();
+                    }
+                    if (!isDone()) {
+                        checkResult(visitor.postVisitDirectory(dir, exc));
+                    }
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        }
+
+        private boolean isDone() {
+            return terminated || failure.get() != null;
+        }
+
+        /**
+         * Checks the result of a visitor method, returning {@code true} if the walk should descend into the directory.
+         */
+        private boolean checkResult(FileVisitResult result) {
+            if (result == FileVisitResult.TERMINATE) {
+                terminated = true;
+            }
+            return result == FileVisitResult.CONTINUE && !isDone();
+        }
+
+        private void fail(IOException e) {
+            if (!failure.compareAndSet(null, e)) {
+                failure.get().addSuppressed(e);
+            }
+        }
+    }
+
+    public static class Builder {
+
+        private Path start;
+
+        private PathMatcher filter;
+
+        private int parallelism;
+
+        private ForkJoinPool pool;
+
+        private boolean ordered;
+
+        public Builder() {
+            start = Paths.get(System.getProperty("user.dir"));
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+
+        public Builder from(Path start) {
+            this.start = Objects.requireNonNull(start);
+            return this;
+        }
+
+        /**
+         * Only visit paths accepted by the supplied path matcher, directories which are not accepted are not listed.
+         *
+         * @see ExtraFileVisitors#filter(FileVisitor, PathMatcher)
+         */
+        public Builder filter(PathMatcher filter) {
+            this.filter = Objects.requireNonNull(filter);
+            return this;
+        }
+
+        /**
+         * Sets the number of threads used to list directories. A new pool is created for each walk.
+         */
+        public Builder parallelism(int parallelism) {
+            checkArgument(parallelism > 0, "parallelism must be positive: %s", parallelism);
+            this.parallelism = parallelism;
+            this.pool = null;
+            return this;
+        }
+
+        /**
+         * Uses an existing pool to list directories instead of creating a new pool for each walk.
+         */
+        public Builder pool(ForkJoinPool pool) {
+            this.pool = Objects.requireNonNull(pool);
+            return this;
+        }
+
+        /**
+         * Produces the results of {@link ParallelFileWalker#stream()} in a deterministic order. Ordered streams
+         * collect the entire tree before returning the first result.
+         */
+        public Builder ordered() {
+            this.ordered = true;
+            return this;
+        }
+
+        /**
+         * Creates a new parallel file walker.
+         */
+        public ParallelFileWalker build() {
+            return new ParallelFileWalker(this);
+        }
+    }
+
+}
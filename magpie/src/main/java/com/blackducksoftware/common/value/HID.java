@@ -21,33 +21,50 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static com.google.common.base.Strings.nullToEmpty;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.function.Function;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Joiner;
+import com.google.common.base.MoreObjects;
 import com.google.common.base.Splitter;
-import com.google.common.collect.ComparisonChain;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.collect.Maps;
 import com.google.common.net.UrlEscapers;
 
 /**
@@ -66,6 +83,19 @@ public final class HID {
     private static final ImmutableSet<String> HIERARCHICAL_FRAGMENT_SCHEMES = ImmutableSet.of("zip", "jar", "tar", "rpm", "ar", "arj", "cpio", "dump",
             "sevenz");
 
+    /**
+     * The canonical instances of well known schemes.
+     */
+    private static final ImmutableMap<String, String> KNOWN_SCHEMES = Maps.toMap(ImmutableSet.<String> builder()
+            .add("file", "http", "https")
+            .addAll(HIERARCHICAL_FRAGMENT_SCHEMES)
+            .build(), scheme -> scheme);
+
+    /**
+     * Interner for schemes and authorities which are not well known.
+     */
+    private static final Interner<String> INTERNER = Interners.newWeakInterner();
+
     /**
      * The standardized path separator character.
      */
@@ -81,29 +111,140 @@ public final class HID {
      */
     private static final Splitter PATH_SPLITTER = Splitter.on(PATH_SEPARATOR_CHAR).omitEmptyStrings();
 
+    /**
+     * The characters that may appear unescaped in a URI we parse without the help of {@link URI}. This is a subset of
+     * the characters allowed in a path, fragment or registry-based authority; anything else falls back to the slower
+     * (but more complete) implementation.
+     */
+    private static final CharMatcher URI_CHARS = CharMatcher.inRange('a', 'z')
+            .or(CharMatcher.inRange('A', 'Z'))
+            .or(CharMatcher.inRange('0', '9'))
+            .or(CharMatcher.anyOf("-_.!~*'();/:@&=+$,"))
+            .precomputed();
+
+    /**
+     * The characters allowed in a URI scheme (after the first character, which must be alphabetic).
+     */
+    private static final CharMatcher SCHEME_CHARS = CharMatcher.inRange('a', 'z')
+            .or(CharMatcher.inRange('A', 'Z'))
+            .or(CharMatcher.inRange('0', '9'))
+            .or(CharMatcher.anyOf("+-."))
+            .precomputed();
+
     /**
      * An empty path.
      */
     private static final String[] EMPTY_PATH = new String[0];
 
+    /**
+     * The system property used to configure the path cache, the value must be a {@link CacheBuilderSpec}.
+     */
+    public static final String PATH_CACHE_SPEC_PROPERTY = "com.blackducksoftware.common.value.HID.pathCache";
+
+    /**
+     * The system property used to configure the segment cache, the value must be a {@link CacheBuilderSpec}.
+     */
+    public static final String SEGMENT_CACHE_SPEC_PROPERTY = "com.blackducksoftware.common.value.HID.segmentCache";
+
     /**
      * Static cache so the path arrays are re-used (i.e. this is more for memory then CPU savings).
      */
-    private static final Map<String, String[]> PATH_CACHE = new LinkedHashMap<String, String[]>() {
-        private static final long serialVersionUID = 1L;
+    private static final LoadingCache<String, String[]> PATH_CACHE = newCache(PATH_CACHE_SPEC_PROPERTY,
+            "maximumSize=65536,concurrencyLevel=16",
+            CacheLoader.from(HID::toPath));
 
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
-            return size() > 1000;
+    /**
+     * Static cache so individual path segments are normalized once and shared between path arrays.
+     */
+    private static final LoadingCache<String, String> SEGMENT_CACHE = newCache(SEGMENT_CACHE_SPEC_PROPERTY,
+            "maximumSize=262144,concurrencyLevel=16",
+            CacheLoader.from(HID::loadPathSegment));
+
+    /**
+     * Creates one of the static caches using the specification from the system properties (if present).
+     */
+    private static <V> LoadingCache<String, V> newCache(String property, String defaultSpec, CacheLoader<String, V> loader) {
+        return CacheBuilder.from(System.getProperty(property, defaultSpec)).recordStats().build(loader);
+    }
+
+    /**
+     * Statistics about the normalization of path segments.
+     */
+    public static final class NormalizationStats {
+
+        private final long asciiCount;
+
+        private final long normalizedCount;
+
+        private final long denormalizedCount;
+
+        private NormalizationStats(long asciiCount, long normalizedCount, long denormalizedCount) {
+            this.asciiCount = asciiCount;
+            this.normalizedCount = normalizedCount;
+            this.denormalizedCount = denormalizedCount;
+        }
+
+        /**
+         * Returns the number of segments which were pure ASCII and therefore did not require normalization.
+         */
+        public long asciiCount() {
+            return asciiCount;
+        }
+
+        /**
+         * Returns the number of non-ASCII segments that were already normalized.
+         */
+        public long normalizedCount() {
+            return normalizedCount;
+        }
+
+        /**
+         * Returns the number of segments that required normalization (i.e. the slow path).
+         */
+        public long denormalizedCount() {
+            return denormalizedCount;
         }
 
         @Override
-        public String[] computeIfAbsent(String key, Function<? super String, ? extends String[]> mappingFunction) {
-            synchronized (this) {
-                return super.computeIfAbsent(key, mappingFunction);
-            }
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("asciiCount", asciiCount)
+                    .add("normalizedCount", normalizedCount)
+                    .add("denormalizedCount", denormalizedCount)
+                    .toString();
         }
-    };
+    }
+
+    /**
+     * Counters for the path segments which are normalized.
+     */
+    private static final LongAdder ASCII_SEGMENTS = new LongAdder();
+
+    private static final LongAdder NORMALIZED_SEGMENTS = new LongAdder();
+
+    private static final LongAdder DENORMALIZED_SEGMENTS = new LongAdder();
+
+    /**
+     * Returns a snapshot of the statistics for the normalization of path segments. Note that segments are only
+     * normalized when they are not found in the segment cache.
+     */
+    public static NormalizationStats normalizationStats() {
+        return new NormalizationStats(ASCII_SEGMENTS.sum(), NORMALIZED_SEGMENTS.sum(), DENORMALIZED_SEGMENTS.sum());
+    }
+
+    /**
+     * Returns a snapshot of the statistics for the cache of parsed paths.
+     */
+    public static CacheStats pathCacheStats() {
+        return PATH_CACHE.stats();
+    }
+
+    /**
+     * Returns a snapshot of the statistics for the cache of normalized path segments.
+     */
+    public static CacheStats segmentCacheStats() {
+        return SEGMENT_CACHE.stats();
+    }
 
     /**
      * Converts an archive entry name into a normalized path.
@@ -128,51 +269,127 @@ public final class HID {
                     path.add("..");
                 }
             } else if (!segment.equals(".")) {
-                path.add(normalizePathSegment(segment));
+                path.add(SEGMENT_CACHE.getUnchecked(segment));
             }
         }
         return path.toArray(EMPTY_PATH);
     }
 
+    /**
+     * Loads the canonical instance of the normalized path segment. If normalization changes the segment, the normalized
+     * form is itself looked up so that all equivalent segments share the same instance.
+     */
+    private static String loadPathSegment(String segment) {
+        String normalizedSegment = normalizePathSegment(segment);
+        return normalizedSegment == segment ? segment : SEGMENT_CACHE.getUnchecked(normalizedSegment);
+    }
+
     /**
      * Normalization procedure for path segments.
      */
     private static String normalizePathSegment(String segment) {
+        // ASCII text is always normalized
+        for (int i = 0; i < segment.length(); ++i) {
+            if (segment.charAt(i) >= 0x80) {
+                return normalizeNonAsciiPathSegment(segment);
+            }
+        }
+        ASCII_SEGMENTS.increment();
+        return segment;
+    }
+
+    private static String normalizeNonAsciiPathSegment(String segment) {
+        // Avoid creating a new string if the text is already normalized
+        if (Normalizer.isNormalized(segment, Normalizer.Form.NFC)) {
+            NORMALIZED_SEGMENTS.increment();
+            return segment;
+        }
+
         // Perform Unicode normalization on the text
+        DENORMALIZED_SEGMENTS.increment();
         return Normalizer.normalize(segment, Normalizer.Form.NFC);
     }
 
     /**
      * Ordering that sorts HID according to a pre-order tree traversal.
      */
-    private static int preOrderTraversal(HID left, HID right) {
-        ComparisonChain compare = ComparisonChain.start();
-        for (int i = 0; i < Math.min(left.segments.length, right.segments.length) && compare.result() == 0; ++i) {
-            String[] leftNested = left.segments[i], rightNested = right.segments[i];
-            for (int j = 0; j < Math.min(leftNested.length, rightNested.length) && compare.result() == 0; ++j) {
-                compare = compare.compare(leftNested[j], rightNested[j], HID::comparePathSegments);
+    private static int preOrderTraversal(HID left, HID right, Comparator<? super String> segmentOrder) {
+        if (left == right) {
+            return 0;
+        }
+        String[][] leftSegments = left.segments, rightSegments = right.segments;
+        int nesting = Math.min(leftSegments.length, rightSegments.length);
+        for (int i = 0; i < nesting; ++i) {
+            String[] leftNested = leftSegments[i], rightNested = rightSegments[i];
+            if (leftNested == rightNested) {
+                // Path arrays are shared through the cache
+                continue;
+            }
+            int depth = Math.min(leftNested.length, rightNested.length);
+            for (int j = 0; j < depth; ++j) {
+                String leftSegment = leftNested[j], rightSegment = rightNested[j];
+                if (leftSegment != rightSegment) {
+                    // Segments are interned, only compare them if they are not the same instance
+                    int result = segmentOrder.compare(leftSegment, rightSegment);
+                    if (result != 0) {
+                        return result < 0 ? -1 : 1;
+                    }
+                }
+            }
+            if (leftNested.length != rightNested.length) {
+                return leftNested.length < rightNested.length ? -1 : 1;
             }
-            compare = compare.compare(leftNested.length, rightNested.length);
         }
-        compare = compare.compare(left.segments.length, right.segments.length);
-        return compare.result();
+        return Integer.compare(leftSegments.length, rightSegments.length);
     }
 
-    // TODO postOrderTraversal? (abcdefgh)
-    // TODO breadthFirstTraversal? (hdegabcf)
+    /**
+     * Ordering that sorts HID according to a post-order tree traversal.
+     */
+    private static int postOrderTraversal(HID left, HID right, Comparator<? super String> segmentOrder) {
+        if (left == right) {
+            return 0;
+        }
+        String[][] leftSegments = left.segments, rightSegments = right.segments;
+        int nesting = Math.min(leftSegments.length, rightSegments.length);
+        for (int i = 0; i < nesting; ++i) {
+            String[] leftNested = leftSegments[i], rightNested = rightSegments[i];
+            if (leftNested == rightNested) {
+                continue;
+            }
+            int depth = Math.min(leftNested.length, rightNested.length);
+            for (int j = 0; j < depth; ++j) {
+                String leftSegment = leftNested[j], rightSegment = rightNested[j];
+                if (leftSegment != rightSegment) {
+                    int result = segmentOrder.compare(leftSegment, rightSegment);
+                    if (result != 0) {
+                        return result < 0 ? -1 : 1;
+                    }
+                }
+            }
+            if (leftNested.length < rightNested.length) {
+                // Descendants come before their ancestors
+                return i == leftSegments.length - 1 ? 1 : -1;
+            } else if (leftNested.length > rightNested.length) {
+                return i == rightSegments.length - 1 ? -1 : 1;
+            }
+        }
+        return Integer.compare(rightSegments.length, leftSegments.length);
+    }
 
     /**
-     * The ordering of individual "file name" segments.
+     * Ordering that sorts HID according to a breadth-first tree traversal.
      */
-    // TODO Numeric/version smart sorting
-    // TODO Case sensitivity?
-    // TODO Locale specific (collate)?
-    // TODO Work breaks?
-    // TODO Share logic with version comparator?
-    private static int comparePathSegments(String left, String right) {
-        return left.compareTo(right);
+    private static int breadthFirstTraversal(HID left, HID right, Comparator<? super String> segmentOrder) {
+        int result = Integer.compare(left.totalDepth(), right.totalDepth());
+        return result != 0 ? result : preOrderTraversal(left, right, segmentOrder);
     }
 
+    /**
+     * The default ordering of individual "file name" segments.
+     */
+    private static final Comparator<String> DEFAULT_SEGMENT_ORDER = HIDSegmentOrder.lexicographic();
+
     /**
      * Returns an ordering that imposes a pre-order tree traversal.
      * <p>
@@ -191,14 +408,77 @@ public final class HID {
      * Given a collection of unordered HID's, this ordering would produce {@code hdabcegf}.
      */
     public static Comparator<HID> preOrder() {
-        return HID::preOrderTraversal;
+        return preOrder(DEFAULT_SEGMENT_ORDER);
+    }
+
+    /**
+     * Returns an ordering that imposes a pre-order tree traversal using the supplied ordering of individual path
+     * segments.
+     *
+     * @see HIDSegmentOrder
+     */
+    public static Comparator<HID> preOrder(Comparator<? super String> segmentOrder) {
+        Objects.requireNonNull(segmentOrder);
+        return (left, right) -> preOrderTraversal(left, right, segmentOrder);
+    }
+
+    /**
+     * Returns an ordering that imposes a post-order tree traversal.
+     * <p>
+     * Using the same tree from {@link #preOrder()}, this ordering would produce {@code abcdefgh}. The contents of an
+     * archive are considered descendants of the archive.
+     */
+    public static Comparator<HID> postOrder() {
+        return postOrder(DEFAULT_SEGMENT_ORDER);
+    }
+
+    /**
+     * Returns an ordering that imposes a post-order tree traversal using the supplied ordering of individual path
+     * segments.
+     *
+     * @see HIDSegmentOrder
+     */
+    public static Comparator<HID> postOrder(Comparator<? super String> segmentOrder) {
+        Objects.requireNonNull(segmentOrder);
+        return (left, right) -> postOrderTraversal(left, right, segmentOrder);
+    }
+
+    /**
+     * Returns an ordering that imposes a breadth-first tree traversal.
+     * <p>
+     * Using the same tree from {@link #preOrder()}, this ordering would produce {@code hdegabcf}. The root of an archive
+     * is considered one level deeper then the archive itself.
+     */
+    public static Comparator<HID> breadthFirst() {
+        return breadthFirst(DEFAULT_SEGMENT_ORDER);
+    }
+
+    /**
+     * Returns an ordering that imposes a breadth-first tree traversal using the supplied ordering of individual path
+     * segments.
+     *
+     * @see HIDSegmentOrder
+     */
+    public static Comparator<HID> breadthFirst(Comparator<? super String> segmentOrder) {
+        Objects.requireNonNull(segmentOrder);
+        return (left, right) -> breadthFirstTraversal(left, right, segmentOrder);
     }
 
     /**
      * Returns an ordering that ignores all path information and only considers the name.
      */
     public static Comparator<HID> ignorePathOrder() {
-        return Comparator.comparing(HID::getName, HID::comparePathSegments);
+        return ignorePathOrder(DEFAULT_SEGMENT_ORDER);
+    }
+
+    /**
+     * Returns an ordering that ignores all path information and only considers the name using the supplied ordering of
+     * individual path segments.
+     *
+     * @see HIDSegmentOrder
+     */
+    public static Comparator<HID> ignorePathOrder(Comparator<? super String> segmentOrder) {
+        return Comparator.comparing(HID::getName, segmentOrder);
     }
 
     /**
@@ -219,7 +499,29 @@ public final class HID {
      */
     private final String[][] segments;
 
+    /**
+     * The cached hash code, zero if it has not been computed.
+     */
+    private int hash;
+
+    /**
+     * The cached URI string, {@code null} if it has not been rendered.
+     */
+    @Nullable
+    private String uriString;
+
+    /**
+     * The cached, escaped URI string of the container, {@code null} if it has not been rendered or if there is no
+     * container. This value is shared with other HIDs in the same container.
+     */
+    @Nullable
+    private String escapedContainer;
+
     private HID(String[] schemes, String[] authorities, String[][] segments, int nesting, int depth) {
+        this(schemes, authorities, segments, nesting, depth, null);
+    }
+
+    private HID(String[] schemes, String[] authorities, String[][] segments, int nesting, int depth, @Nullable String escapedContainer) {
         checkArgument(schemes.length == authorities.length, "schemes and authorities lengths must match");
         checkArgument(schemes.length == segments.length, "schemes and segment lengths must match");
         checkArgument(segments.length > 0, "segements must not be empty");
@@ -230,6 +532,17 @@ public final class HID {
         this.authorities = Arrays.copyOf(authorities, nesting + 1);
         this.segments = Arrays.copyOf(segments, nesting + 1);
         this.segments[nesting] = Arrays.copyOf(segments[nesting], depth < 0 ? segments[nesting].length : depth);
+        this.escapedContainer = escapedContainer;
+    }
+
+    /**
+     * Creates a HID which takes ownership of the supplied arrays, they must not be modified once passed in.
+     */
+    private HID(String[] schemes, String[] authorities, String[][] segments, @Nullable String escapedContainer) {
+        this.schemes = schemes;
+        this.authorities = authorities;
+        this.segments = segments;
+        this.escapedContainer = escapedContainer;
     }
 
     @VisibleForTesting
@@ -242,9 +555,63 @@ public final class HID {
         return segments[nesting()].length;
     }
 
+    /**
+     * Returns the scheme at the specified nesting level.
+     */
+    String scheme(int nesting) {
+        return schemes[nesting];
+    }
+
+    /**
+     * Returns the authority at the specified nesting level.
+     */
+    String authority(int nesting) {
+        return authorities[nesting];
+    }
+
+    /**
+     * Returns the path segments at the specified nesting level. Callers must not modify the returned array.
+     */
+    String[] segments(int nesting) {
+        return segments[nesting];
+    }
+
+    /**
+     * Returns the canonical instance of a validated, lower case scheme.
+     */
+    static String canonicalScheme(String scheme) {
+        String result = KNOWN_SCHEMES.get(scheme);
+        return result != null ? result : INTERNER.intern(scheme);
+    }
+
+    /**
+     * Returns the canonical instance of an authority.
+     */
+    static String canonicalAuthority(String authority) {
+        return authority.isEmpty() ? "" : INTERNER.intern(authority);
+    }
+
+    /**
+     * Creates a new HID from already normalized data.
+     */
+    static HID create(String[] schemes, String[] authorities, String[][] segments) {
+        return new HID(schemes, authorities, segments, segments.length - 1, -1);
+    }
+
+    /**
+     * Returns the depth of this HID in the tree, including all the nesting levels.
+     */
+    private int totalDepth() {
+        int totalDepth = nesting();
+        for (String[] nested : segments) {
+            totalDepth += nested.length;
+        }
+        return totalDepth;
+    }
+
     private HID parent() {
         assert depth() > 0;
-        return new HID(schemes, authorities, segments, nesting(), depth() - 1);
+        return new HID(schemes, authorities, segments, nesting(), depth() - 1, escapedContainer);
     }
 
     private HID container() {
@@ -410,7 +777,7 @@ public final class HID {
         if (isRoot()) {
             return this;
         } else {
-            return new HID(schemes, authorities, segments, nesting(), 0);
+            return new HID(schemes, authorities, segments, nesting(), 0, escapedContainer);
         }
     }
 
@@ -497,21 +864,46 @@ public final class HID {
      * Returns this HID as a URI string useful for serialization.
      */
     public String toUriString() {
-        StringBuilder buffer = new StringBuilder(128).append(schemes[0]).append("://").append(authorities[0]).append('/');
-        String result = PATH_JOINER.appendTo(buffer, Stream.of(segments[0]).map(UrlEscapers.urlPathSegmentEscaper()::escape).iterator()).toString();
-        for (int i = 1; i < segments.length; ++i) {
-            buffer.setLength(0);
-            result = buffer.append(schemes[i]).append(':')
-                    .append(UrlEscapers.urlPathSegmentEscaper().escape(result))
-                    .append("#/")
-                    .append(UrlEscapers.urlFragmentEscaper().escape(PATH_JOINER.join(segments[i])))
-                    .toString();
+        String result = uriString;
+        if (result == null) {
+            int nesting = nesting();
+            StringBuilder buffer = new StringBuilder(128);
+            if (nesting == 0) {
+                buffer.append(schemes[0]).append("://").append(authorities[0]).append('/');
+                PATH_JOINER.appendTo(buffer, Stream.of(segments[0]).map(UrlEscapers.urlPathSegmentEscaper()::escape).iterator());
+            } else {
+                buffer.append(schemes[nesting]).append(':')
+                        .append(escapedContainer())
+                        .append("#/")
+                        .append(UrlEscapers.urlFragmentEscaper().escape(PATH_JOINER.join(segments[nesting])));
+            }
+            result = buffer.toString();
+            uriString = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the escaped URI string of the container, rendering it only if necessary.
+     */
+    private String escapedContainer() {
+        String result = escapedContainer;
+        if (result == null) {
+            result = escapeUriString(container());
+            escapedContainer = result;
         }
         return result;
     }
 
     /**
-     * Returns this HID as a URI useful for serialization.
+     * Escapes the URI string of the supplied HID for use as the "archive URI" of a nested HID.
+     */
+    private static String escapeUriString(HID hid) {
+        return UrlEscapers.urlPathSegmentEscaper().escape(hid.toUriString());
+    }
+
+    /**
+     * Returns this HID as a URI useful for serialization. The URI string is only rendered once.
      * <p>
      * <em>WARNING</em> This method will fail for non-RFC 2396 URIs.
      */
@@ -542,24 +934,144 @@ public final class HID {
 
     @Override
     public int hashCode() {
-        return Objects.hash(Arrays.hashCode(schemes), Arrays.hashCode(authorities), Arrays.deepHashCode(segments));
+        int result = hash;
+        if (result == 0) {
+            // Same as `Objects.hash(...)` without the boxing
+            result = 31 + Arrays.hashCode(schemes);
+            result = 31 * result + Arrays.hashCode(authorities);
+            result = 31 * result + Arrays.deepHashCode(segments);
+            hash = result;
+        }
+        return result;
     }
 
     @Override
     public boolean equals(Object obj) {
-        if (obj instanceof HID) {
+        if (obj == this) {
+            return true;
+        } else if (obj instanceof HID) {
             HID other = (HID) obj;
-            return Arrays.equals(schemes, other.schemes)
-                    && Arrays.equals(authorities, other.authorities)
-                    && Arrays.deepEquals(segments, other.segments);
+            if (hash != 0 && other.hash != 0 && hash != other.hash) {
+                return false;
+            } else if (segments.length != other.segments.length) {
+                return false;
+            }
+
+            // Start at the most specific level, that is where differences are most likely
+            for (int i = segments.length - 1; i >= 0; --i) {
+                if (!segmentsEqual(segments[i], other.segments[i])) {
+                    return false;
+                }
+            }
+            return Arrays.equals(schemes, other.schemes) && Arrays.equals(authorities, other.authorities);
         }
         return false;
     }
 
+    /**
+     * Compares path segments starting with the last segment. Arrays and segments are frequently shared so reference
+     * equality is checked first.
+     */
+    private static boolean segmentsEqual(String[] left, String[] right) {
+        if (left == right) {
+            return true;
+        } else if (left.length != right.length) {
+            return false;
+        }
+        for (int i = left.length - 1; i >= 0; --i) {
+            if (left[i] != right[i] && !left[i].equals(right[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the binary encoding of this HID to the supplied output.
+     *
+     * @see HIDCodec
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        HIDCodec.write(this, out);
+    }
+
+    /**
+     * Writes the binary encoding of this HID to the supplied buffer.
+     *
+     * @throws java.nio.BufferOverflowException
+     *             if the buffer does not have enough space remaining
+     * @see HIDCodec
+     */
+    public void writeTo(ByteBuffer buffer) {
+        HIDCodec.write(this, buffer);
+    }
+
+    /**
+     * Reads a HID from the binary encoding in the supplied input.
+     *
+     * @see HIDCodec
+     */
+    public static HID readFrom(DataInput in) throws IOException {
+        return HIDCodec.read(in);
+    }
+
+    /**
+     * Reads a HID from the binary encoding in the supplied buffer.
+     *
+     * @throws IllegalArgumentException
+     *             if the buffer does not contain a valid encoding
+     * @see HIDCodec
+     */
+    public static HID readFrom(ByteBuffer buffer) {
+        return HIDCodec.read(buffer);
+    }
+
     public Builder newBuilder() {
         return new Builder(this);
     }
 
+    /**
+     * Creates the HIDs for a listing of entry names in the supplied container, e.g. the entries of an archive. All of
+     * the returned HIDs share the container level data, only the entry names are resolved for each HID.
+     */
+    public static List<HID> childrenOf(HID container, CharSequence scheme, Iterable<String> entryNames) {
+        int nesting = container.nesting() + 1;
+        String[] schemes = Arrays.copyOf(container.schemes, nesting + 1);
+        String[] authorities = Arrays.copyOf(container.authorities, nesting + 1);
+        schemes[nesting] = canonicalScheme(Rules.checkScheme(scheme));
+        authorities[nesting] = "";
+        String escapedContainer = escapeUriString(container);
+
+        ImmutableList.Builder<HID> children = ImmutableList.builder();
+        String previousEntryName = null;
+        String[] directory = EMPTY_PATH;
+        for (String entryName : entryNames) {
+            String[] path;
+            int index = entryName.lastIndexOf(PATH_SEPARATOR_CHAR);
+            String name = entryName.substring(index + 1);
+            if (name.isEmpty() || name.equals(".") || name.equals("..")) {
+                path = toPath(entryName);
+            } else {
+                // Entries are typically grouped by directory, only resolve the directory when it changes
+                if (index < 0) {
+                    directory = EMPTY_PATH;
+                } else if (previousEntryName == null
+                        || previousEntryName.lastIndexOf(PATH_SEPARATOR_CHAR) != index
+                        || !entryName.regionMatches(0, previousEntryName, 0, index)) {
+                    directory = toPath(entryName.substring(0, index + 1));
+                }
+                path = Arrays.copyOf(directory, directory.length + 1);
+                path[directory.length] = SEGMENT_CACHE.getUnchecked(name);
+                previousEntryName = entryName;
+            }
+
+            String[][] segments = Arrays.copyOf(container.segments, nesting + 1);
+            segments[nesting] = path;
+            children.add(new HID(schemes, authorities, segments, escapedContainer));
+        }
+        return children.build();
+    }
+
     public static HID of(URI uri) {
         return new Builder().parseUri(uri).build();
     }
@@ -625,6 +1137,18 @@ public final class HID {
 
         private int size = -1;
 
+        /**
+         * The HID this builder was created from, {@code null} once the levels it contributed have been modified.
+         */
+        @Nullable
+        private HID origin;
+
+        /**
+         * The escaped URI string of the origin, shared by all the HIDs built directly inside the origin.
+         */
+        @Nullable
+        private String escapedOrigin;
+
         public Builder() {
             this(DEFAULT_CAPACITY);
         }
@@ -635,6 +1159,7 @@ public final class HID {
             System.arraycopy(hid.authorities, 0, authorities, 0, hid.authorities.length);
             System.arraycopy(hid.segments, 0, segments, 0, hid.segments.length);
             size = hid.schemes.length - 1;
+            origin = hid;
         }
 
         private Builder(int capacity) {
@@ -653,9 +1178,9 @@ public final class HID {
          */
         public Builder push(CharSequence scheme, @Nullable String authority, String path) {
             ensureCapacity(++size + 1);
-            schemes[size] = Rules.checkScheme(scheme);
-            authorities[size] = nullToEmpty(authority); // TODO Validate authority
-            segments[size] = PATH_CACHE.computeIfAbsent(Objects.requireNonNull(path), HID::toPath);
+            schemes[size] = canonicalScheme(Rules.checkScheme(scheme));
+            authorities[size] = canonicalAuthority(nullToEmpty(authority)); // TODO Validate authority
+            segments[size] = PATH_CACHE.getUnchecked(Objects.requireNonNull(path));
             return this;
         }
 
@@ -671,6 +1196,9 @@ public final class HID {
          */
         public Builder resolve(String path) {
             String[] newSegments = toPath(path);
+            if (origin != null && size <= origin.nesting()) {
+                origin = null;
+            }
             if (path.charAt(0) == PATH_SEPARATOR_CHAR) {
                 segments[size] = newSegments;
             } else {
@@ -702,6 +1230,9 @@ public final class HID {
             if (size < 0) {
                 throw new NoSuchElementException();
             }
+            if (origin != null && size <= origin.nesting()) {
+                origin = null;
+            }
             schemes[size] = null;
             authorities[size] = null;
             segments[size] = null;
@@ -713,7 +1244,20 @@ public final class HID {
          * Creates a new HID object from the current state of the builder.
          */
         public HID build() {
-            return new HID(schemes, authorities, segments, size, -1);
+            // Reuse the rendering of the origin when building inside of it or alongside it
+            String escapedContainer = null;
+            if (origin != null) {
+                int nesting = origin.nesting();
+                if (size == nesting + 1) {
+                    if (escapedOrigin == null) {
+                        escapedOrigin = escapeUriString(origin);
+                    }
+                    escapedContainer = escapedOrigin;
+                } else if (size == nesting) {
+                    escapedContainer = origin.escapedContainer;
+                }
+            }
+            return new HID(schemes, authorities, segments, size, -1, escapedContainer);
         }
 
         private void ensureCapacity(int minCapacity) {
@@ -767,11 +1311,141 @@ public final class HID {
         }
 
         private Builder parse(CharSequence input) {
-            // TODO We should implement this without using URI for performance and RFC 3986...
-            parseUri(URI.create(input.toString()));
+            String uri = input.toString();
+            if (!scan(uri)) {
+                // Anything the scanner does not understand (including invalid input) goes through URI
+                parseUri(URI.create(uri));
+            }
             return this;
         }
 
+        /**
+         * Attempts to parse the supplied URI in a single pass without creating a {@link URI} instance. This produces
+         * the same result as {@link #parseUri(URI)} for the common forms (e.g. {@code file:///foo} or
+         * {@code zip:file:%2F%2F%2Ffoo.zip#/bar}). Returns {@code false} without modifying the state of this builder if
+         * the input requires the full URI implementation, e.g. queries, Java JAR URLs, IPv6 literals, unescaped
+         * non-ASCII characters or malformed input.
+         */
+        private boolean scan(String uri) {
+            int length = uri.length();
+
+            // scheme = ALPHA *( ALPHA / DIGIT / "+" / "-" / "." ) ":"
+            if (length == 0 || !isAsciiAlpha(uri.charAt(0))) {
+                return false;
+            }
+            int colon = 1;
+            while (colon < length && SCHEME_CHARS.matches(uri.charAt(colon))) {
+                colon++;
+            }
+            if (colon == length || uri.charAt(colon) != ':') {
+                return false;
+            }
+
+            // Validate the remaining characters and find the start of the fragment
+            int hash = -1;
+            for (int i = colon + 1; i < length; ++i) {
+                char c = uri.charAt(i);
+                if (c == '%') {
+                    if (i + 2 >= length || Character.digit(uri.charAt(i + 1), 16) < 0 || Character.digit(uri.charAt(i + 2), 16) < 0) {
+                        return false;
+                    }
+                    i += 2;
+                } else if (c == '#' && hash < 0) {
+                    hash = i;
+                } else if (!URI_CHARS.matches(c)) {
+                    return false;
+                }
+            }
+            int end = hash < 0 ? length : hash;
+            if (end == colon + 1) {
+                // Missing scheme specific part
+                return false;
+            }
+
+            String scheme = toLowerCase(uri.substring(0, colon));
+            String fragment = hash < 0 ? null : decode(uri, hash + 1, length);
+            // NOTE: "jar" can be a hierarchical scheme if it has a fragment!
+            if (fragment != null && (HIERARCHICAL_FRAGMENT_SCHEMES.contains(scheme) || fragment.startsWith("/"))) {
+                // Hierarchical schemes use "<scheme>:<archiveUri>#<entryName>" for URIs
+                parse(decode(uri, colon + 1, end)).push(scheme, fragment);
+                return true;
+            } else if (scheme.equals("jar") || !isNullOrEmpty(fragment) || uri.charAt(colon + 1) != PATH_SEPARATOR_CHAR) {
+                // Java JAR URLs, misplaced fragments and opaque URIs are handled (or rejected) by the URI code
+                return false;
+            }
+
+            // hier-part = "//" authority path-abempty / path-absolute
+            String authority = null;
+            int path = colon + 1;
+            if (end - path > 1 && uri.charAt(path + 1) == PATH_SEPARATOR_CHAR) {
+                path = uri.indexOf(PATH_SEPARATOR_CHAR, colon + 3);
+                if (path < 0 || path >= end) {
+                    // The path would be empty
+                    return false;
+                } else if (path > colon + 3) {
+                    authority = decode(uri, colon + 3, path);
+                }
+            }
+            push(scheme, authority, decode(uri, path, end));
+            return true;
+        }
+
+        private static boolean isAsciiAlpha(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+
+        /**
+         * Decodes the percent-encoded UTF-8 octets in the specified range of a (previously validated) URI. This
+         * behaves like the URI class, malformed UTF-8 sequences are replaced.
+         */
+        private static String decode(String uri, int start, int end) {
+            int escape = uri.indexOf('%', start);
+            if (escape < 0 || escape >= end) {
+                return uri.substring(start, end);
+            }
+
+            StringBuilder result = new StringBuilder(end - start).append(uri, start, escape);
+            ByteBuffer octets = null;
+            CharsetDecoder decoder = null;
+            int pos = escape;
+            while (pos < end) {
+                char c = uri.charAt(pos);
+                if (c != '%') {
+                    result.append(c);
+                    pos++;
+                    continue;
+                }
+
+                // Escaped US-ASCII (e.g. the "%2F" of nested URIs) does not require a charset decoder
+                int octet = (Character.digit(uri.charAt(pos + 1), 16) << 4) | Character.digit(uri.charAt(pos + 2), 16);
+                if (octet < 0x80) {
+                    result.append((char) octet);
+                    pos += 3;
+                    continue;
+                }
+
+                // Decode a run of consecutive escaped octets all at once
+                if (decoder == null) {
+                    octets = ByteBuffer.allocate((end - pos) / 3);
+                    decoder = StandardCharsets.UTF_8.newDecoder()
+                            .onMalformedInput(CodingErrorAction.REPLACE)
+                            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                }
+                octets.clear();
+                while (pos < end && uri.charAt(pos) == '%') {
+                    octets.put((byte) ((Character.digit(uri.charAt(pos + 1), 16) << 4) | Character.digit(uri.charAt(pos + 2), 16)));
+                    pos += 3;
+                }
+                octets.flip();
+                CharBuffer chars = CharBuffer.allocate(octets.remaining());
+                decoder.reset();
+                decoder.decode(octets, chars, true);
+                decoder.flush(chars);
+                result.append(chars.flip());
+            }
+            return result.toString();
+        }
+
         private static int computeCapacity(int minCapacity, int currentCapacity) {
             return Math.max(minCapacity, Math.addExact(currentCapacity, currentCapacity >> 1));
         }
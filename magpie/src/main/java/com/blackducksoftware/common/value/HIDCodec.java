@@ -0,0 +1,551 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.value;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * A compact binary encoding of HIDs.
+ * <p>
+ * Individual HIDs can be encoded using {@link HID#writeTo(DataOutput)}, each encoding begins with a version byte and
+ * is independent of any other encoding. A sequence of HIDs can be encoded using a {@link Writer}: the version is only
+ * written once and each HID is encoded as a delta against the previous HID. When the sequence is sorted (e.g. using
+ * {@link HID#preOrder()}) most of each HID is shared with the previous HID and the encoding is significantly smaller.
+ * <p>
+ * Each encoded HID is prefixed with its length in bytes. All numbers are written as unsigned variable length integers
+ * (7 bits per byte, least significant group first). Strings are written as a character count followed by each
+ * character in a UTF-8 like encoding that preserves unpaired surrogates (i.e. CESU-8). Schemes are written as an index
+ * into a dictionary of schemes; new schemes are written as a zero followed by the scheme string and are added to the
+ * dictionary for the remainder of the sequence.
+ *
+ * @author jgustie
+ */
+public final class HIDCodec {
+
+    /**
+     * The current version of the encoding.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The schemes which are always present in the dictionary. This list can only be appended to without changing the
+     * version.
+     */
+    private static final ImmutableList<String> SCHEMES = ImmutableList.of("file", "zip", "jar", "tar", "rpm", "ar", "arj", "cpio", "dump",
+            "sevenz", "http", "https", "gzip", "bzip2", "xz", "lzma", "z", "pack200", "snappy", "deflate");
+
+    /**
+     * The dictionary index of each scheme which is always present.
+     */
+    private static final ImmutableMap<String, Integer> SCHEME_INDEXES;
+    static {
+        ImmutableMap.Builder<String, Integer> schemeIndexes = ImmutableMap.builder();
+        for (int i = 0; i < SCHEMES.size(); ++i) {
+            schemeIndexes.put(SCHEMES.get(i), i + 1);
+        }
+        SCHEME_INDEXES = schemeIndexes.build();
+    }
+
+    /**
+     * The binary output.
+     */
+    @FunctionalInterface
+    private interface Output {
+        void write(byte[] b, int off, int len) throws IOException;
+    }
+
+    /**
+     * The binary input.
+     */
+    private interface Input {
+        int readUnsignedByte() throws IOException;
+
+        void readFully(byte[] b, int off, int len) throws IOException;
+    }
+
+    /**
+     * Writes a sequence of HIDs, each HID is encoded relative to the previously written HID.
+     */
+    public static final class Writer {
+
+        private final Output output;
+
+        /**
+         * The scheme dictionary, only copied once a scheme which is not always present is written.
+         */
+        private Map<String, Integer> schemes = SCHEME_INDEXES;
+
+        /**
+         * The buffer used to encode a single HID.
+         */
+        private byte[] buffer = new byte[128];
+
+        private int count;
+
+        private boolean versionWritten;
+
+        @Nullable
+        private HID previous;
+
+        private Writer(Output output) {
+            this.output = Objects.requireNonNull(output);
+        }
+
+        /**
+         * Writes the supplied HID.
+         */
+        public Writer write(HID hid) throws IOException {
+            int levels = hid.nesting() + 1;
+
+            // Find the number of levels and segments in common with the previous HID
+            int sharedLevels = 0;
+            int sharedSegments = -1;
+            if (previous != null) {
+                int maxLevels = Math.min(levels, previous.nesting() + 1);
+                while (sharedLevels < maxLevels && sameLevel(hid, previous, sharedLevels)) {
+                    sharedLevels++;
+                }
+                if (sharedLevels < maxLevels
+                        && hid.scheme(sharedLevels).equals(previous.scheme(sharedLevels))
+                        && hid.authority(sharedLevels).equals(previous.authority(sharedLevels))) {
+                    String[] segments = hid.segments(sharedLevels);
+                    String[] previousSegments = previous.segments(sharedLevels);
+                    int maxSegments = Math.min(segments.length, previousSegments.length);
+                    sharedSegments = 0;
+                    while (sharedSegments < maxSegments && segments[sharedSegments].equals(previousSegments[sharedSegments])) {
+                        sharedSegments++;
+                    }
+                }
+            }
+
+            // Encode the HID, leaving room at the front of the buffer for the version and length
+            count = 6;
+            writeVarint(levels);
+            writeVarint(sharedLevels);
+            if (sharedLevels < levels) {
+                // Zero means the level is written in full, otherwise it is one more then the shared segment count
+                writeVarint(sharedSegments + 1);
+                int level = sharedLevels;
+                if (sharedSegments >= 0) {
+                    writeSegments(hid.segments(level), sharedSegments);
+                    level++;
+                }
+                for (; level < levels; ++level) {
+                    writeScheme(hid.scheme(level));
+                    writeString(hid.authority(level));
+                    writeSegments(hid.segments(level), 0);
+                }
+            }
+
+            // Fill in the header backwards and write everything in one call
+            int length = count - 6;
+            int start = 6 - varintSize(length);
+            for (int i = start; length > 0x7F; length >>>= 7) {
+                buffer[i++] = (byte) ((length & 0x7F) | 0x80);
+            }
+            buffer[5] = (byte) length;
+            if (!versionWritten) {
+                buffer[--start] = VERSION;
+                versionWritten = true;
+            }
+            output.write(buffer, start, count - start);
+            previous = hid;
+            return this;
+        }
+
+        private static boolean sameLevel(HID left, HID right, int level) {
+            return left.scheme(level).equals(right.scheme(level))
+                    && left.authority(level).equals(right.authority(level))
+                    && Arrays.equals(left.segments(level), right.segments(level));
+        }
+
+        private void writeScheme(String scheme) {
+            Integer index = schemes.get(scheme);
+            if (index != null) {
+                writeVarint(index);
+            } else {
+                writeVarint(0);
+                writeString(scheme);
+                if (schemes == SCHEME_INDEXES) {
+                    schemes = new HashMap<>(SCHEME_INDEXES);
+                }
+                schemes.put(scheme, schemes.size() + 1);
+            }
+        }
+
+        private void writeSegments(String[] segments, int offset) {
+            writeVarint(segments.length - offset);
+            for (int i = offset; i < segments.length; ++i) {
+                writeString(segments[i]);
+            }
+        }
+
+        private void writeString(String value) {
+            int length = value.length();
+            writeVarint(length);
+            ensureCapacity(length * 3);
+            byte[] buffer = this.buffer;
+            int count = this.count;
+            for (int i = 0; i < length; ++i) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    buffer[count++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[count++] = (byte) (0xC0 | (c >> 6));
+                    buffer[count++] = (byte) (0x80 | (c & 0x3F));
+                } else {
+                    buffer[count++] = (byte) (0xE0 | (c >> 12));
+                    buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buffer[count++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            this.count = count;
+        }
+
+        private void writeVarint(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[count++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[count++] = (byte) value;
+        }
+
+        private void ensureCapacity(int length) {
+            if (count + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, count + length));
+            }
+        }
+
+        private static int varintSize(int value) {
+            int size = 1;
+            while ((value & ~0x7F) != 0) {
+                value >>>= 7;
+                size++;
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Reads a sequence of HIDs written by a {@link Writer}.
+     */
+    public static final class Reader {
+
+        private final Input input;
+
+        /**
+         * The scheme dictionary, only copied once a scheme which is not always present is read.
+         */
+        private List<String> schemes = SCHEMES;
+
+        /**
+         * The buffer holding the encoding of a single HID.
+         */
+        private byte[] buffer = new byte[128];
+
+        private int position;
+
+        private int limit;
+
+        private boolean versionRead;
+
+        @Nullable
+        private HID previous;
+
+        private Reader(Input input) {
+            this.input = Objects.requireNonNull(input);
+        }
+
+        /**
+         * Reads the next HID, returning {@code null} if the end of the input has been reached.
+         */
+        @Nullable
+        public HID read() throws IOException {
+            int length;
+            try {
+                if (!versionRead) {
+                    int version = input.readUnsignedByte();
+                    if (version != VERSION) {
+                        throw new StreamCorruptedException("unsupported version: " + version);
+                    }
+                    versionRead = true;
+                }
+                length = readLength();
+            } catch (EOFException e) {
+                return null;
+            }
+            if (length > buffer.length) {
+                buffer = new byte[Math.max(buffer.length << 1, length)];
+            }
+            input.readFully(buffer, 0, length);
+            position = 0;
+            limit = length;
+
+            int levels = readVarint();
+            int sharedLevels = readVarint();
+            int previousLevels = previous != null ? previous.nesting() + 1 : 0;
+            if (levels < 1 || sharedLevels > Math.min(levels, previousLevels)) {
+                throw new StreamCorruptedException("invalid level count");
+            }
+
+            String[] schemes = new String[levels];
+            String[] authorities = new String[levels];
+            String[][] segments = new String[levels][];
+            for (int level = 0; level < sharedLevels; ++level) {
+                schemes[level] = previous.scheme(level);
+                authorities[level] = previous.authority(level);
+                segments[level] = previous.segments(level);
+            }
+            if (sharedLevels < levels) {
+                int level = sharedLevels;
+                int sharedSegments = readVarint() - 1;
+                if (sharedSegments >= 0) {
+                    if (level >= previousLevels || sharedSegments > previous.segments(level).length) {
+                        throw new StreamCorruptedException("invalid segment count");
+                    }
+                    schemes[level] = previous.scheme(level);
+                    authorities[level] = previous.authority(level);
+                    segments[level] = readSegments(previous.segments(level), sharedSegments);
+                    level++;
+                }
+                for (; level < levels; ++level) {
+                    schemes[level] = readScheme();
+                    authorities[level] = HID.canonicalAuthority(readString());
+                    segments[level] = readSegments(null, 0);
+                }
+            }
+            if (position != limit) {
+                throw new StreamCorruptedException("invalid length");
+            }
+            previous = HID.create(schemes, authorities, segments);
+            return previous;
+        }
+
+        /**
+         * Reads the length prefix directly from the input. An end of file is only expected on the first byte.
+         */
+        private int readLength() throws IOException {
+            int b = input.readUnsignedByte();
+            int value = b & 0x7F;
+            try {
+                for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+                    if (shift > 28) {
+                        throw new StreamCorruptedException("invalid length");
+                    }
+                    b = input.readUnsignedByte();
+                    value |= (b & 0x7F) << shift;
+                }
+            } catch (EOFException e) {
+                throw new StreamCorruptedException("truncated length");
+            }
+            if (value < 0) {
+                throw new StreamCorruptedException("invalid length");
+            }
+            return value;
+        }
+
+        private String readScheme() throws IOException {
+            int index = readVarint();
+            if (index == 0) {
+                String scheme = HID.canonicalScheme(Rules.checkScheme(readString()));
+                if (schemes == SCHEMES) {
+                    schemes = new ArrayList<>(SCHEMES);
+                }
+                schemes.add(scheme);
+                return scheme;
+            } else if (index <= schemes.size()) {
+                return schemes.get(index - 1);
+            } else {
+                throw new StreamCorruptedException("invalid scheme index: " + index);
+            }
+        }
+
+        private String[] readSegments(@Nullable String[] shared, int sharedLength) throws IOException {
+            int length = readVarint();
+            if (length > limit - position) {
+                throw new StreamCorruptedException("invalid segment count");
+            }
+            String[] segments = new String[sharedLength + length];
+            if (sharedLength > 0) {
+                System.arraycopy(shared, 0, segments, 0, sharedLength);
+            }
+            for (int i = sharedLength; i < segments.length; ++i) {
+                segments[i] = readString();
+            }
+            return segments;
+        }
+
+        private String readString() throws IOException {
+            int length = readVarint();
+            if (length > limit - position) {
+                throw new StreamCorruptedException("invalid string length");
+            }
+            char[] value = new char[length];
+            for (int i = 0; i < length; ++i) {
+                int b = readByte();
+                if (b < 0x80) {
+                    value[i] = (char) b;
+                } else if ((b & 0xE0) == 0xC0) {
+                    value[i] = (char) (((b & 0x1F) << 6) | readContinuation());
+                } else if ((b & 0xF0) == 0xE0) {
+                    value[i] = (char) (((b & 0x0F) << 12) | (readContinuation() << 6) | readContinuation());
+                } else {
+                    throw new StreamCorruptedException("invalid character encoding");
+                }
+            }
+            return new String(value);
+        }
+
+        private int readContinuation() throws IOException {
+            int b = readByte();
+            if ((b & 0xC0) != 0x80) {
+                throw new StreamCorruptedException("invalid character encoding");
+            }
+            return b & 0x3F;
+        }
+
+        private int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (value < 0) {
+                        break;
+                    }
+                    return value;
+                }
+            }
+            throw new StreamCorruptedException("invalid variable length integer");
+        }
+
+        private int readByte() throws IOException {
+            if (position == limit) {
+                throw new StreamCorruptedException("invalid length");
+            }
+            return buffer[position++] & 0xFF;
+        }
+    }
+
+    /**
+     * Returns a writer for encoding a sequence of HIDs to the supplied output.
+     */
+    public static Writer newWriter(DataOutput out) {
+        return new Writer(out::write);
+    }
+
+    /**
+     * Returns a writer for encoding a sequence of HIDs to the supplied buffer.
+     */
+    public static Writer newWriter(ByteBuffer buffer) {
+        return new Writer(buffer::put);
+    }
+
+    /**
+     * Returns a reader for decoding a sequence of HIDs from the supplied input.
+     */
+    public static Reader newReader(DataInput in) {
+        return new Reader(new Input() {
+            @Override
+            public int readUnsignedByte() throws IOException {
+                return in.readUnsignedByte();
+            }
+
+            @Override
+            public void readFully(byte[] b, int off, int len) throws IOException {
+                in.readFully(b, off, len);
+            }
+        });
+    }
+
+    /**
+     * Returns a reader for decoding a sequence of HIDs from the supplied buffer.
+     */
+    public static Reader newReader(ByteBuffer buffer) {
+        return new Reader(new Input() {
+            @Override
+            public int readUnsignedByte() throws IOException {
+                if (!buffer.hasRemaining()) {
+                    throw new EOFException();
+                }
+                return buffer.get() & 0xFF;
+            }
+
+            @Override
+            public void readFully(byte[] b, int off, int len) throws IOException {
+                if (buffer.remaining() < len) {
+                    throw new EOFException();
+                }
+                buffer.get(b, off, len);
+            }
+        });
+    }
+
+    // Single HIDs use a new writer or reader, neither copies the scheme dictionary unless it encounters a new scheme
+
+    static void write(HID hid, DataOutput out) throws IOException {
+        newWriter(out).write(hid);
+    }
+
+    static void write(HID hid, ByteBuffer buffer) {
+        try {
+            newWriter(buffer).write(hid);
+        } catch (IOException e) {
+            throw new AssertionError("buffers do not throw I/O exceptions", e);
+        }
+    }
+
+    static HID read(DataInput in) throws IOException {
+        return readRequired(newReader(in));
+    }
+
+    static HID read(ByteBuffer buffer) {
+        try {
+            return readRequired(newReader(buffer));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("invalid encoding", e);
+        }
+    }
+
+    private static HID readRequired(Reader reader) throws IOException {
+        HID hid = reader.read();
+        if (hid == null) {
+            throw new EOFException();
+        }
+        return hid;
+    }
+
+    private HIDCodec() {
+        assert false;
+    }
+}
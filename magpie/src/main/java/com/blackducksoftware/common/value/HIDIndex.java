@@ -0,0 +1,366 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.value;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Assigns dense integer handles to HIDs. Handles are assigned sequentially starting from zero and are never reused;
+ * every ancestor of an indexed HID is also assigned a handle. Handles can be used in place of HIDs as keys (e.g. for
+ * joins) without retaining the HID instances.
+ * <p>
+ * Each handle is stored as a name and a few integers in paged primitive arrays, names are shared through the normal
+ * HID segment interning. Handles are located using an open addressing hash table keyed by the parent handle and the
+ * name. The handle based methods do not allocate.
+ * <p>
+ * This class is safe for use by multiple concurrent threads.
+ *
+ * @author jgustie
+ */
+public final class HIDIndex {
+
+    /**
+     * The number of bits used to address a handle within a page.
+     */
+    private static final int PAGE_SHIFT = 12;
+
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /**
+     * The name of a root handle.
+     */
+    private static final class Root {
+        private final String scheme;
+
+        private final String authority;
+
+        private Root(String scheme, String authority) {
+            this.scheme = Objects.requireNonNull(scheme);
+            this.authority = Objects.requireNonNull(authority);
+        }
+    }
+
+    /**
+     * A fixed size block of handle data. Once written, the data for a handle does not change.
+     */
+    private static final class Page {
+        /**
+         * The path segment for each handle, or a {@link Root} if the handle represents a root.
+         */
+        private final Object[] names = new Object[PAGE_SIZE];
+
+        /**
+         * The parent handle at the same nesting level, -1 for roots.
+         */
+        private final int[] parents = new int[PAGE_SIZE];
+
+        /**
+         * The container handle, -1 if the handle is not nested.
+         */
+        private final int[] containers = new int[PAGE_SIZE];
+
+        /**
+         * The nesting level in the high byte and the depth in the remaining bits.
+         */
+        private final int[] levels = new int[PAGE_SIZE];
+    }
+
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * The pages of handle data. The array is replaced when it grows.
+     */
+    private volatile Page[] pages = new Page[16];
+
+    /**
+     * The number of assigned handles.
+     */
+    private volatile int size;
+
+    /**
+     * The hash table of handles, each slot contains one more then the handle; zero indicates an empty slot.
+     */
+    private int[] table = new int[1 << 10];
+
+    /**
+     * Returns the handle of the supplied HID, assigning new handles as necessary.
+     */
+    public int handleOf(HID hid) {
+        int nesting = hid.nesting();
+        long stamp = lock.readLock();
+        try {
+            int handle = -1;
+            for (int n = 0; n <= nesting; ++n) {
+                // Find or insert the root at this nesting level, the previous handle is the container
+                String scheme = hid.scheme(n);
+                String authority = hid.authority(n);
+                int hash = hashRoot(handle, scheme, authority);
+                int found = findRoot(hash, handle, scheme, authority);
+                if (found < 0) {
+                    stamp = writeLock(stamp);
+                    found = findRoot(hash, handle, scheme, authority);
+                    if (found < 0) {
+                        found = insert(hash, new Root(scheme, authority), -1, handle, n << 24);
+                    }
+                }
+                int container = handle;
+                handle = found;
+
+                // Find or insert each path segment
+                String[] segments = hid.segments(n);
+                for (int d = 0; d < segments.length; ++d) {
+                    String name = segments[d];
+                    hash = hashSegment(handle, name);
+                    found = findSegment(hash, handle, name);
+                    if (found < 0) {
+                        stamp = writeLock(stamp);
+                        found = findSegment(hash, handle, name);
+                        if (found < 0) {
+                            found = insert(hash, name, handle, container, (n << 24) | (d + 1));
+                        }
+                    }
+                    handle = found;
+                }
+            }
+            return handle;
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * Returns the HID for the supplied handle.
+     *
+     * @throws IndexOutOfBoundsException
+     *             if the handle has not been assigned
+     */
+    public HID hidOf(int handle) {
+        checkElementIndex(handle, size, "handle");
+        int nesting = level(handle) >>> 24;
+        String[] schemes = new String[nesting + 1];
+        String[] authorities = new String[nesting + 1];
+        String[][] segments = new String[nesting + 1][];
+        for (int h = handle, n = nesting; n >= 0; --n) {
+            String[] path = new String[level(h) & 0xFFFFFF];
+            for (int d = path.length - 1; d >= 0; --d) {
+                path[d] = (String) name(h);
+                h = page(h).parents[h & PAGE_MASK];
+            }
+            Root root = (Root) name(h);
+            schemes[n] = root.scheme;
+            authorities[n] = root.authority;
+            segments[n] = path;
+            h = page(h).containers[h & PAGE_MASK];
+        }
+        return HID.create(schemes, authorities, segments);
+    }
+
+    /**
+     * Returns the handle of the parent of the supplied handle, if the handle represents a root the container handle is
+     * returned. Returns -1 if there is no parent.
+     *
+     * @see HID#getParent()
+     */
+    public int parentHandle(int handle) {
+        checkElementIndex(handle, size, "handle");
+        Page page = page(handle);
+        int parent = page.parents[handle & PAGE_MASK];
+        return parent >= 0 ? parent : page.containers[handle & PAGE_MASK];
+    }
+
+    /**
+     * Returns the handle of the container of the supplied handle, -1 if there is no container.
+     *
+     * @see HID#getContainer()
+     */
+    public int containerHandle(int handle) {
+        checkElementIndex(handle, size, "handle");
+        return page(handle).containers[handle & PAGE_MASK];
+    }
+
+    /**
+     * Determines if the HID represented by the other handle is an ancestor of the HID represented by the handle.
+     *
+     * @see HID#isAncestor(HID)
+     */
+    public boolean isAncestor(int handle, int other) {
+        checkElementIndex(handle, size, "handle");
+        checkElementIndex(other, size, "other");
+        int otherLevel = level(other);
+        int h = handle;
+        int level = level(h);
+        while ((level >>> 24) > (otherLevel >>> 24)) {
+            h = page(h).containers[h & PAGE_MASK];
+            level = level(h);
+        }
+        if ((level >>> 24) < (otherLevel >>> 24)) {
+            return false;
+        }
+        while ((level & 0xFFFFFF) > (otherLevel & 0xFFFFFF)) {
+            h = page(h).parents[h & PAGE_MASK];
+            level = level(h);
+        }
+        return h == other && handle != other;
+    }
+
+    /**
+     * Returns the number of assigned handles.
+     */
+    public int size() {
+        return size;
+    }
+
+    private Page page(int handle) {
+        return pages[handle >>> PAGE_SHIFT];
+    }
+
+    private Object name(int handle) {
+        return page(handle).names[handle & PAGE_MASK];
+    }
+
+    private int level(int handle) {
+        return page(handle).levels[handle & PAGE_MASK];
+    }
+
+    /**
+     * Converts the supplied read or write stamp to a write stamp. The lock may be released while waiting for the write
+     * lock.
+     */
+    private long writeLock(long stamp) {
+        long writeStamp = lock.tryConvertToWriteLock(stamp);
+        if (writeStamp == 0L) {
+            lock.unlockRead(stamp);
+            writeStamp = lock.writeLock();
+        }
+        return writeStamp;
+    }
+
+    private int findRoot(int hash, int container, String scheme, String authority) {
+        int[] table = this.table;
+        int mask = table.length - 1;
+        for (int i = hash & mask;; i = (i + 1) & mask) {
+            int handle = table[i] - 1;
+            if (handle < 0) {
+                return -1;
+            }
+            Page page = page(handle);
+            Object name = page.names[handle & PAGE_MASK];
+            if (name instanceof Root && page.containers[handle & PAGE_MASK] == container) {
+                Root root = (Root) name;
+                if (root.scheme.equals(scheme) && root.authority.equals(authority)) {
+                    return handle;
+                }
+            }
+        }
+    }
+
+    private int findSegment(int hash, int parent, String segment) {
+        int[] table = this.table;
+        int mask = table.length - 1;
+        for (int i = hash & mask;; i = (i + 1) & mask) {
+            int handle = table[i] - 1;
+            if (handle < 0) {
+                return -1;
+            }
+            Page page = page(handle);
+            Object name = page.names[handle & PAGE_MASK];
+            if (page.parents[handle & PAGE_MASK] == parent && (name == segment || segment.equals(name))) {
+                return handle;
+            }
+        }
+    }
+
+    /**
+     * Assigns a new handle, must be called while holding the write lock.
+     */
+    private int insert(int hash, Object name, int parent, int container, int level) {
+        int handle = size;
+        if (handle == Integer.MAX_VALUE) {
+            throw new IllegalStateException("too many handles");
+        }
+
+        // Store the handle data
+        int pageIndex = handle >>> PAGE_SHIFT;
+        Page[] pages = this.pages;
+        if (pageIndex == pages.length) {
+            pages = Arrays.copyOf(pages, pages.length * 2);
+        }
+        if (pages[pageIndex] == null) {
+            pages[pageIndex] = new Page();
+        }
+        Page page = pages[pageIndex];
+        page.names[handle & PAGE_MASK] = name;
+        page.parents[handle & PAGE_MASK] = parent;
+        page.containers[handle & PAGE_MASK] = container;
+        page.levels[handle & PAGE_MASK] = level;
+        this.pages = pages;
+
+        // Keep the table at most half full
+        if (handle >= table.length >>> 1) {
+            rehash();
+        }
+        addToTable(table, hash, handle);
+        size = handle + 1;
+        return handle;
+    }
+
+    private void rehash() {
+        int[] newTable = new int[table.length * 2];
+        for (int handle = 0; handle < size; ++handle) {
+            Object name = name(handle);
+            int hash = name instanceof Root
+                    ? hashRoot(containerHandle(handle), ((Root) name).scheme, ((Root) name).authority)
+                    : hashSegment(page(handle).parents[handle & PAGE_MASK], (String) name);
+            addToTable(newTable, hash, handle);
+        }
+        table = newTable;
+    }
+
+    private static void addToTable(int[] table, int hash, int handle) {
+        int mask = table.length - 1;
+        int i = hash & mask;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = handle + 1;
+    }
+
+    private static int hashRoot(int container, String scheme, String authority) {
+        return mix((scheme.hashCode() * 31 + authority.hashCode()) * 31 + container);
+    }
+
+    private static int hashSegment(int parent, String segment) {
+        return mix(segment.hashCode() * 31 + parent);
+    }
+
+    /**
+     * Spreads the bits of the hash since the table is probed linearly.
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        return hash ^ (hash >>> 16);
+    }
+
+}
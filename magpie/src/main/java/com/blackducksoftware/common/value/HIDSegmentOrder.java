@@ -0,0 +1,185 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.value;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Comparator;
+import java.util.Locale;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Orderings of individual path segments (i.e. file names) for use with the HID comparators, e.g.
+ * {@code HID.preOrder(HIDSegmentOrder.natural())}.
+ * <p>
+ * All of the orderings are consistent with {@code equals}: segments which are considered equivalent (e.g. differing
+ * only by case) are ordered using {@link String#compareTo(String)}.
+ *
+ * @author jgustie
+ */
+public final class HIDSegmentOrder {
+
+    /**
+     * Returns the ordering based on the Unicode values of the segments. This is the default ordering.
+     */
+    public static Comparator<String> lexicographic() {
+        return Comparator.naturalOrder();
+    }
+
+    /**
+     * Returns an ordering which compares sequences of digits numerically, e.g. {@code lib-1.9.jar} sorts before
+     * {@code lib-1.10.jar}. The comparison does not require any allocation.
+     */
+    public static Comparator<String> natural() {
+        return HIDSegmentOrder::compareNatural;
+    }
+
+    /**
+     * Returns an ordering which ignores case differences.
+     */
+    public static Comparator<String> caseInsensitive() {
+        return HIDSegmentOrder::compareCaseInsensitive;
+    }
+
+    /**
+     * Returns an ordering which uses the supplied collator. The collation keys of up to 65536 recently compared
+     * segments are cached.
+     *
+     * @see #collated(Collator, long)
+     */
+    public static Comparator<String> collated(Collator collator) {
+        return collated(collator, DEFAULT_MAXIMUM_KEYS);
+    }
+
+    /**
+     * Returns an ordering which uses the supplied collator, caching the collation keys of up to the specified number
+     * of segments. For best performance the cache should be large enough to hold every distinct segment being sorted.
+     */
+    public static Comparator<String> collated(Collator collator, long maximumKeys) {
+        checkArgument(maximumKeys >= 0L, "maximumKeys must be non-negative: %s", maximumKeys);
+        return new CollatedOrder(collator, maximumKeys);
+    }
+
+    /**
+     * Returns an ordering which uses the collator for the supplied locale.
+     *
+     * @see #collated(Collator)
+     */
+    public static Comparator<String> collated(Locale locale) {
+        return collated(Collator.getInstance(locale));
+    }
+
+    private static int compareNatural(String left, String right) {
+        int leftLength = left.length(), rightLength = right.length();
+        int i = 0, j = 0;
+        while (i < leftLength && j < rightLength) {
+            char l = left.charAt(i), r = right.charAt(j);
+            if (isDigit(l) && isDigit(r)) {
+                // Skip leading zeros
+                while (i < leftLength && left.charAt(i) == '0') {
+                    i++;
+                }
+                while (j < rightLength && right.charAt(j) == '0') {
+                    j++;
+                }
+
+                // Longer runs of significant digits are larger numbers
+                int leftEnd = i, rightEnd = j;
+                while (leftEnd < leftLength && isDigit(left.charAt(leftEnd))) {
+                    leftEnd++;
+                }
+                while (rightEnd < rightLength && isDigit(right.charAt(rightEnd))) {
+                    rightEnd++;
+                }
+                if (leftEnd - i != rightEnd - j) {
+                    return leftEnd - i < rightEnd - j ? -1 : 1;
+                }
+
+                // Same length, the first different digit decides
+                for (; i < leftEnd; ++i, ++j) {
+                    if (left.charAt(i) != right.charAt(j)) {
+                        return left.charAt(i) < right.charAt(j) ? -1 : 1;
+                    }
+                }
+            } else if (l != r) {
+                return l < r ? -1 : 1;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        if (leftLength - i != rightLength - j) {
+            return leftLength - i < rightLength - j ? -1 : 1;
+        }
+        return left.compareTo(right);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int compareCaseInsensitive(String left, String right) {
+        int result = String.CASE_INSENSITIVE_ORDER.compare(left, right);
+        return result != 0 ? result : left.compareTo(right);
+    }
+
+    /**
+     * The default maximum number of cached collation keys.
+     */
+    private static final long DEFAULT_MAXIMUM_KEYS = 65536L;
+
+    /**
+     * An ordering based on a collator that caches the collation keys.
+     */
+    private static final class CollatedOrder implements Comparator<String> {
+
+        /**
+         * The collation keys of recently compared segments. Keys cannot be weakly held: each collation key strongly
+         * references its source string.
+         */
+        private final LoadingCache<String, CollationKey> keys;
+
+        private CollatedOrder(Collator collator, long maximumKeys) {
+            // Collators are not thread safe, each thread computes keys using its own copy
+            Collator prototype = (Collator) collator.clone();
+            ThreadLocal<Collator> collators = ThreadLocal.withInitial(() -> {
+                synchronized (prototype) {
+                    return (Collator) prototype.clone();
+                }
+            });
+            keys = CacheBuilder.newBuilder().maximumSize(maximumKeys)
+                    .build(CacheLoader.from(segment -> collators.get().getCollationKey(segment)));
+        }
+
+        @Override
+        public int compare(String left, String right) {
+            if (left == right) {
+                return 0;
+            }
+            int result = keys.getUnchecked(left).compareTo(keys.getUnchecked(right));
+            return result != 0 ? result : left.compareTo(right);
+        }
+    }
+
+    private HIDSegmentOrder() {
+        assert false;
+    }
+}
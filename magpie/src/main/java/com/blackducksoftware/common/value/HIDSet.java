@@ -0,0 +1,495 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.value;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * An immutable set of HIDs sorted in pre-order. In pre-order, all of the descendants of a HID are sorted contiguously
+ * immediately after it; this allows subtree queries such as {@link #descendantsOf(HID)} to be answered by binary
+ * searching for the subtree boundaries instead of testing every element.
+ * <p>
+ * Unlike {@link HID#preOrder()}, the ordering used by this set is consistent with {@code equals}: at each nesting
+ * level the scheme and authority are compared before the path segments, so HIDs which only differ by scheme or
+ * authority are distinct elements in separate subtrees.
+ * <p>
+ * A set can be written to a file and later {@linkplain #map(Path) memory mapped}. The mapped set decodes the individual
+ * HIDs on demand so large collections built offline can be queried without loading them.
+ *
+ * @author jgustie
+ */
+public final class HIDSet extends AbstractSet<HID> implements NavigableSet<HID> {
+
+    /**
+     * The pre-order used by this set, consistent with {@code equals}.
+     */
+    static final Comparator<HID> ORDER = HIDSet::compare;
+
+    private static final Comparator<String> ORIGIN_ORDER = Comparator.naturalOrder();
+
+    private static final Comparator<HID> REVERSE_ORDER = ORDER.reversed();
+
+    /**
+     * The sorted, distinct HIDs. Views share the same list.
+     */
+    private final List<HID> hids;
+
+    /**
+     * The index of the first HID in this view (inclusive).
+     */
+    private final int fromIndex;
+
+    /**
+     * The index of the last HID in this view (exclusive).
+     */
+    private final int toIndex;
+
+    /**
+     * Flag indicating this is a descending view.
+     */
+    private final boolean descending;
+
+    private HIDSet(List<HID> hids, int fromIndex, int toIndex, boolean descending) {
+        this.hids = Objects.requireNonNull(hids);
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+        this.descending = descending;
+    }
+
+    /**
+     * Returns a sorted set containing the supplied HIDs.
+     */
+    public static HIDSet copyOf(Collection<? extends HID> hids) {
+        List<HID> sorted = ImmutableSortedSet.<HID> copyOf(ORDER, hids).asList();
+        return new HIDSet(sorted, 0, sorted.size(), false);
+    }
+
+    /**
+     * Memory maps a set previously written using {@link #writeTo(Path)}. The set remains valid after the file is
+     * deleted, the mapping is released once the set is garbage collected.
+     */
+    public static HIDSet map(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+        }
+        MappedList hids = new MappedList(buffer);
+        return new HIDSet(hids, 0, hids.size(), false);
+    }
+
+    /**
+     * Writes the HIDs in this set to a file which can be {@linkplain #map(Path) memory mapped}. The file consists of
+     * the individually encoded HIDs, followed by the offset to each encoding and the total number of HIDs.
+     *
+     * @see HIDCodec
+     */
+    public void writeTo(Path file) throws IOException {
+        int size = size();
+        int[] offsets = new int[size];
+        // DataOutputStream.size() saturates at Integer.MAX_VALUE, count the bytes ourselves
+        CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        try (DataOutputStream out = new DataOutputStream(counter)) {
+            for (int i = 0; i < size; ++i) {
+                offsets[i] = checkMappable(counter.getCount());
+                hids.get(fromIndex + i).writeTo(out);
+            }
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            out.writeInt(size);
+            checkMappable(counter.getCount());
+        }
+    }
+
+    /**
+     * Verifies a position in the file can be memory mapped.
+     */
+    private static int checkMappable(long position) throws IOException {
+        if (position > Integer.MAX_VALUE) {
+            throw new IOException("too large to map: " + position + " bytes");
+        }
+        return (int) position;
+    }
+
+    /**
+     * Returns a view of the strict descendants of the supplied HID (which need not be present in this set).
+     */
+    public HIDSet descendantsOf(HID hid) {
+        int start = higherIndex(hid);
+        return new HIDSet(hids, start, subtreeEnd(start, hid), descending);
+    }
+
+    /**
+     * Returns the direct children of the supplied HID (which need not be present in this set). If the HID is an
+     * archive, the children include the root of the archive.
+     *
+     * @see HID#getParent()
+     */
+    public List<HID> childrenOf(HID hid) {
+        int start = higherIndex(hid);
+        int end = subtreeEnd(start, hid);
+        List<HID> children = new ArrayList<>();
+        while (start < end) {
+            HID descendant = hids.get(start);
+            if (hid.equals(descendant.getParent())) {
+                children.add(descendant);
+            }
+
+            // Skip over the descendants of the current element
+            start = subtreeEnd(start + 1, descendant);
+        }
+        if (descending) {
+            Collections.reverse(children);
+        }
+        return children;
+    }
+
+    /**
+     * Returns the number of elements in the subtree rooted at the supplied HID, including the HID itself if it is
+     * present in this set.
+     */
+    public int subtreeSize(HID hid) {
+        int start = ceilingIndex(hid);
+        return subtreeEnd(start < toIndex && hids.get(start).equals(hid) ? start + 1 : start, hid) - start;
+    }
+
+    @Override
+    public Comparator<? super HID> comparator() {
+        return descending ? REVERSE_ORDER : ORDER;
+    }
+
+    @Override
+    public int size() {
+        return toIndex - fromIndex;
+    }
+
+    @Override
+    public boolean contains(@Nullable Object obj) {
+        if (obj instanceof HID) {
+            int index = ceilingIndex((HID) obj);
+            return index < toIndex && hids.get(index).equals(obj);
+        }
+        return false;
+    }
+
+    @Override
+    public Iterator<HID> iterator() {
+        return new Iterator<HID>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public HID next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(index++);
+            }
+        };
+    }
+
+    @Override
+    public Iterator<HID> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public HIDSet descendingSet() {
+        return new HIDSet(hids, fromIndex, toIndex, !descending);
+    }
+
+    @Override
+    public HID first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return get(0);
+    }
+
+    @Override
+    public HID last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return get(size() - 1);
+    }
+
+    @Override
+    public HID lower(HID hid) {
+        return descending ? elementAt(higherIndex(hid)) : elementAt(ceilingIndex(hid) - 1);
+    }
+
+    @Override
+    public HID floor(HID hid) {
+        return descending ? elementAt(ceilingIndex(hid)) : elementAt(higherIndex(hid) - 1);
+    }
+
+    @Override
+    public HID ceiling(HID hid) {
+        return descending ? elementAt(higherIndex(hid) - 1) : elementAt(ceilingIndex(hid));
+    }
+
+    @Override
+    public HID higher(HID hid) {
+        return descending ? elementAt(ceilingIndex(hid) - 1) : elementAt(higherIndex(hid));
+    }
+
+    @Override
+    public HID pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public HID pollLast() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public HIDSet subSet(HID fromElement, boolean fromInclusive, HID toElement, boolean toInclusive) {
+        checkArgument(comparator().compare(fromElement, toElement) <= 0, "fromElement > toElement");
+        if (descending) {
+            return range(toInclusive ? ceilingIndex(toElement) : higherIndex(toElement),
+                    fromInclusive ? higherIndex(fromElement) : ceilingIndex(fromElement));
+        } else {
+            return range(fromInclusive ? ceilingIndex(fromElement) : higherIndex(fromElement),
+                    toInclusive ? higherIndex(toElement) : ceilingIndex(toElement));
+        }
+    }
+
+    @Override
+    public HIDSet headSet(HID toElement, boolean inclusive) {
+        if (descending) {
+            return range(inclusive ? ceilingIndex(toElement) : higherIndex(toElement), toIndex);
+        } else {
+            return range(fromIndex, inclusive ? higherIndex(toElement) : ceilingIndex(toElement));
+        }
+    }
+
+    @Override
+    public HIDSet tailSet(HID fromElement, boolean inclusive) {
+        if (descending) {
+            return range(fromIndex, inclusive ? higherIndex(fromElement) : ceilingIndex(fromElement));
+        } else {
+            return range(inclusive ? ceilingIndex(fromElement) : higherIndex(fromElement), toIndex);
+        }
+    }
+
+    @Override
+    public HIDSet subSet(HID fromElement, HID toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public HIDSet headSet(HID toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public HIDSet tailSet(HID fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    /**
+     * Returns the element at the supplied position in the iteration order of this view.
+     */
+    private HID get(int position) {
+        return descending ? hids.get(toIndex - 1 - position) : hids.get(fromIndex + position);
+    }
+
+    /**
+     * Returns the element at the supplied index, {@code null} if the index is outside of this view.
+     */
+    @Nullable
+    private HID elementAt(int index) {
+        return index >= fromIndex && index < toIndex ? hids.get(index) : null;
+    }
+
+    private HIDSet range(int fromIndex, int toIndex) {
+        return new HIDSet(hids, fromIndex, Math.max(fromIndex, toIndex), descending);
+    }
+
+    /**
+     * Returns the index of the first element in this view which is greater then or equal to the supplied HID.
+     */
+    private int ceilingIndex(HID hid) {
+        int low = fromIndex;
+        int high = toIndex;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ORDER.compare(hids.get(mid), hid) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first element in this view which is greater then the supplied HID.
+     */
+    private int higherIndex(HID hid) {
+        int low = fromIndex;
+        int high = toIndex;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ORDER.compare(hids.get(mid), hid) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first element at or after the start index which is not a descendant of the supplied
+     * HID. The start index must be the position of the first possible descendant.
+     */
+    private int subtreeEnd(int start, HID hid) {
+        int low = start;
+        int high = toIndex;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (isDescendant(hids.get(mid), hid)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * A pre-order traversal which compares the scheme and authority of each nesting level before its path segments.
+     */
+    private static int compare(HID left, HID right) {
+        if (left == right) {
+            return 0;
+        }
+        int nesting = Math.min(left.nesting(), right.nesting());
+        for (int i = 0; i <= nesting; ++i) {
+            int result = ORIGIN_ORDER.compare(left.scheme(i), right.scheme(i));
+            if (result == 0) {
+                result = ORIGIN_ORDER.compare(left.authority(i), right.authority(i));
+            }
+            if (result != 0) {
+                return result < 0 ? -1 : 1;
+            }
+
+            String[] leftSegments = left.segments(i), rightSegments = right.segments(i);
+            int depth = Math.min(leftSegments.length, rightSegments.length);
+            for (int j = 0; j < depth; ++j) {
+                result = leftSegments[j].compareTo(rightSegments[j]);
+                if (result != 0) {
+                    return result < 0 ? -1 : 1;
+                }
+            }
+            if (leftSegments.length != rightSegments.length) {
+                return leftSegments.length < rightSegments.length ? -1 : 1;
+            }
+        }
+        return Integer.compare(left.nesting(), right.nesting());
+    }
+
+    /**
+     * Tests if the candidate is a strict descendant of the supplied HID, including the scheme and authority of each
+     * nesting level.
+     */
+    static boolean isDescendant(HID candidate, HID hid) {
+        if (!candidate.isAncestor(hid)) {
+            return false;
+        }
+        for (int i = 0; i <= hid.nesting(); ++i) {
+            if (!Objects.equals(candidate.scheme(i), hid.scheme(i)) || !Objects.equals(candidate.authority(i), hid.authority(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A list backed by a buffer of individually encoded HIDs.
+     */
+    private static final class MappedList extends AbstractList<HID> implements RandomAccess {
+
+        private final ByteBuffer buffer;
+
+        private final int size;
+
+        private final int offsetsPosition;
+
+        private MappedList(ByteBuffer buffer) throws IOException {
+            this.buffer = Objects.requireNonNull(buffer);
+            int limit = buffer.limit();
+            if (limit < 4) {
+                throw new StreamCorruptedException("missing size");
+            }
+            size = buffer.getInt(limit - 4);
+            offsetsPosition = limit - 4 - 4 * size;
+            if (size < 0 || offsetsPosition < 0) {
+                throw new StreamCorruptedException("invalid size");
+            }
+        }
+
+        @Override
+        public HID get(int index) {
+            checkElementIndex(index, size);
+            ByteBuffer encoding = buffer.duplicate();
+            encoding.position(buffer.getInt(offsetsPosition + 4 * index));
+            encoding.limit(offsetsPosition);
+            return HID.readFrom(encoding);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+}
@@ -0,0 +1,461 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.value;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.annotation.Nullable;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * An external sort for HIDs. Input which exceeds the memory budget is split into sorted runs which are spilled to
+ * temporary files using the {@linkplain HIDCodec binary encoding}, the sorted result is produced by merging the runs.
+ * If there are too many runs to merge at once, they are merged in multiple passes.
+ * <p>
+ * The streams returned by this sorter <em>must</em> be closed in order to release the temporary files, e.g.:
+ *
+ * <pre>
+ * try (Stream&lt;HID&gt; sorted = sorter.sort(hids)) {
+ *     sorted.forEachOrdered(...);
+ * }
+ * </pre>
+ *
+ * The sort is stable.
+ *
+ * @author jgustie
+ */
+public final class HIDSorter {
+
+    public static final class Builder {
+
+        private Comparator<? super HID> comparator = HID.preOrder();
+
+        private long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+
+        @Nullable
+        private Path temporaryDirectory;
+
+        private Executor executor = MoreExecutors.directExecutor();
+
+        private int parallelism = 1;
+
+        public Builder() {
+        }
+
+        /**
+         * The ordering of the sorted HIDs, defaults to {@link HID#preOrder()}.
+         */
+        public Builder comparator(Comparator<? super HID> comparator) {
+            this.comparator = Objects.requireNonNull(comparator);
+            return this;
+        }
+
+        /**
+         * The approximate number of bytes of heap to use for buffering HIDs, defaults to a quarter of the maximum
+         * heap size. The budget is shared by all of the runs being sorted and written concurrently and the run being
+         * buffered; it also limits the number of runs which are merged at once.
+         */
+        public Builder memoryBudget(long memoryBudget) {
+            checkArgument(memoryBudget > 0, "memory budget must be positive: %s", memoryBudget);
+            this.memoryBudget = memoryBudget;
+            return this;
+        }
+
+        /**
+         * The directory used to store sorted runs, defaults to the system temporary directory.
+         */
+        public Builder temporaryDirectory(@Nullable Path temporaryDirectory) {
+            this.temporaryDirectory = temporaryDirectory;
+            return this;
+        }
+
+        /**
+         * Generate sorted runs concurrently using the supplied executor. The parallelism determines the maximum number
+         * of runs being sorted and written at the same time.
+         */
+        public Builder parallel(Executor executor, int parallelism) {
+            checkArgument(parallelism > 0, "parallelism must be positive: %s", parallelism);
+            this.executor = Objects.requireNonNull(executor);
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public HIDSorter build() {
+            return new HIDSorter(this);
+        }
+    }
+
+    /**
+     * A sorted run being merged.
+     */
+    private static final class Run {
+
+        private final Iterator<HID> hids;
+
+        private final int index;
+
+        @Nullable
+        private HID head;
+
+        private Run(Iterator<HID> hids, int index) {
+            this.hids = Objects.requireNonNull(hids);
+            this.index = index;
+        }
+
+        private boolean advance() {
+            head = hids.hasNext() ? hids.next() : null;
+            return head != null;
+        }
+    }
+
+    /**
+     * Iterates over a run which was spilled to a file.
+     */
+    private static final class RunFileIterator implements Iterator<HID>, AutoCloseable {
+
+        private final DataInputStream in;
+
+        private final HIDCodec.Reader reader;
+
+        @Nullable
+        private HID next;
+
+        private RunFileIterator(Path file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+            reader = HIDCodec.newReader(in);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = reader.read();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public HID next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            HID result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * The buffer size used for reading and writing runs.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The maximum number of run files which are open at once while merging.
+     */
+    private static final int MAXIMUM_MERGE_WIDTH = 256;
+
+    private final Comparator<? super HID> comparator;
+
+    private final long runBudget;
+
+    @Nullable
+    private final Path temporaryDirectory;
+
+    private final Executor executor;
+
+    private final int parallelism;
+
+    private final int mergeWidth;
+
+    private HIDSorter(Builder builder) {
+        comparator = builder.comparator;
+        // Up to "parallelism" runs are being spilled while the next run is buffered
+        runBudget = Math.max(builder.memoryBudget / (builder.parallelism + 1), 1L);
+        // Every run file being merged has a buffer, an intermediate merge also has an output buffer
+        mergeWidth = (int) Math.max(Math.min((builder.memoryBudget - runBudget) / BUFFER_SIZE - 1L, MAXIMUM_MERGE_WIDTH), 2L);
+        temporaryDirectory = builder.temporaryDirectory;
+        executor = builder.executor;
+        parallelism = builder.parallelism;
+    }
+
+    /**
+     * Sorts the supplied HIDs. The input is fully consumed before this method returns.
+     */
+    public Stream<HID> sort(Stream<HID> hids) {
+        return sort(hids.iterator());
+    }
+
+    /**
+     * Sorts the supplied HIDs. The input is fully consumed before this method returns.
+     */
+    public Stream<HID> sort(Iterator<? extends HID> hids) {
+        List<CompletableFuture<Path>> runs = new ArrayList<>();
+        List<Path> files = new ArrayList<>();
+        Deque<CompletableFuture<Path>> pending = new ArrayDeque<>();
+        List<HID> buffer = new ArrayList<>();
+        try {
+            long bufferSize = 0L;
+            while (hids.hasNext()) {
+                HID hid = hids.next();
+                buffer.add(hid);
+                bufferSize += estimateSize(hid);
+                if (bufferSize >= runBudget) {
+                    // Only allow a limited number of runs in memory at once
+                    while (pending.size() >= parallelism) {
+                        join(pending.removeFirst());
+                    }
+                    List<HID> run = buffer;
+                    CompletableFuture<Path> runFile = CompletableFuture.supplyAsync(() -> writeRun(run), executor);
+                    runs.add(runFile);
+                    pending.addLast(runFile);
+                    buffer = new ArrayList<>();
+                    bufferSize = 0L;
+                }
+            }
+
+            // The last run never needs to be spilled
+            buffer.sort(comparator);
+            if (runs.isEmpty()) {
+                return buffer.stream();
+            }
+
+            for (CompletableFuture<Path> run : runs) {
+                files.add(join(run));
+            }
+            while (files.size() > mergeWidth) {
+                mergePass(files);
+            }
+            return merge(files, buffer);
+        } catch (RuntimeException | Error e) {
+            for (CompletableFuture<Path> run : runs) {
+                run.thenAccept(HIDSorter::deleteQuietly);
+            }
+            files.forEach(HIDSorter::deleteQuietly);
+            throw e;
+        }
+    }
+
+    /**
+     * Merges consecutive groups of run files, replacing each group with a single merged run. Merging consecutive
+     * runs preserves the stability of the sort.
+     */
+    private void mergePass(List<Path> files) {
+        for (int i = 0; i < files.size(); ++i) {
+            List<Path> group = files.subList(i, Math.min(i + mergeWidth, files.size()));
+            if (group.size() > 1) {
+                // Closing the merged stream deletes the files in the group
+                try (Stream<HID> hids = merge(new ArrayList<>(group), Collections.emptyList())) {
+                    Path file = writeRun(hids.iterator());
+                    group.clear();
+                    files.add(i, file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges the sorted runs into a single stream.
+     */
+    private Stream<HID> merge(List<Path> files, List<HID> buffer) {
+        List<RunFileIterator> iterators = new ArrayList<>(files.size());
+        Runnable closeHandler = () -> {
+            IOException failure = null;
+            for (RunFileIterator iterator : iterators) {
+                try {
+                    iterator.close();
+                } catch (IOException e) {
+                    failure = addSuppressed(failure, e);
+                }
+            }
+            for (Path file : files) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    failure = addSuppressed(failure, e);
+                }
+            }
+            if (failure != null) {
+                throw new UncheckedIOException(failure);
+            }
+        };
+
+        // Runs are ordered by their first element and then by the order they were created in
+        PriorityQueue<Run> queue = new PriorityQueue<>(files.size() + 1, Comparator
+                .<Run, HID> comparing(r -> r.head, comparator)
+                .thenComparingInt(r -> r.index));
+        try {
+            for (int i = 0; i < files.size(); ++i) {
+                RunFileIterator iterator = new RunFileIterator(files.get(i));
+                iterators.add(iterator);
+                Run run = new Run(iterator, i);
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            }
+            Run run = new Run(buffer.iterator(), files.size());
+            if (run.advance()) {
+                queue.add(run);
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                closeHandler.run();
+            } catch (UncheckedIOException suppressed) {
+                e.addSuppressed(suppressed.getCause());
+            }
+            if (e instanceof IOException) {
+                throw new UncheckedIOException((IOException) e);
+            }
+            throw (RuntimeException) e;
+        }
+
+        Iterator<HID> merged = new Iterator<HID>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public HID next() {
+                Run run = queue.poll();
+                if (run == null) {
+                    throw new NoSuchElementException();
+                }
+                HID result = run.head;
+                if (run.advance()) {
+                    queue.add(run);
+                }
+                return result;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(closeHandler);
+    }
+
+    /**
+     * Sorts and writes a single run to a temporary file.
+     */
+    private Path writeRun(List<HID> run) {
+        run.sort(comparator);
+        return writeRun(run.iterator());
+    }
+
+    /**
+     * Writes a single sorted run to a temporary file.
+     */
+    private Path writeRun(Iterator<HID> run) {
+        Path file = null;
+        try {
+            file = temporaryDirectory != null
+                    ? Files.createTempFile(temporaryDirectory, "hids", ".run")
+                    : Files.createTempFile("hids", ".run");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE))) {
+                HIDCodec.Writer writer = HIDCodec.newWriter(out);
+                while (run.hasNext()) {
+                    writer.write(run.next());
+                }
+            }
+            return file;
+        } catch (IOException e) {
+            if (file != null) {
+                deleteQuietly(file);
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns an approximation of the number of bytes of heap retained by a HID.
+     */
+    private static long estimateSize(HID hid) {
+        int levels = hid.nesting() + 1;
+        long size = 16L + 3 * (16L + 4L * levels) + 8L;
+        for (int i = 0; i < levels; ++i) {
+            String[] segments = hid.segments(i);
+            size += 16L + 4L * segments.length;
+            for (String segment : segments) {
+                // Assume segments are not shared
+                size += 40L + 2L * segment.length();
+            }
+        }
+        return size;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static IOException addSuppressed(@Nullable IOException failure, IOException e) {
+        if (failure == null) {
+            return e;
+        }
+        failure.addSuppressed(e);
+        return failure;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Ignore it, we are already failing
+        }
+    }
+
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.value;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+/**
+ * A store of HIDs that shares common prefixes. Each HID added to the tree is represented by a canonical
+ * {@linkplain Node node} which only retains a pointer to its parent and its own name; in a large tree this requires
+ * significantly less memory then retaining the individual HID instances.
+ * <p>
+ * Nodes are unique within a tree: adding equal HIDs to the same tree always produces the same node, allowing nodes to
+ * be compared by identity. This class is safe for use by multiple concurrent threads.
+ *
+ * @author jgustie
+ */
+public final class HIDTree {
+
+    /**
+     * A single HID in the tree.
+     */
+    public static class Node {
+
+        @Nullable
+        private final Node parent;
+
+        private final String name;
+
+        /**
+         * The children of this node, lazily created. Path children are keyed by name, nested roots (i.e. for nodes
+         * representing archives) are keyed by the scheme and authority.
+         */
+        @Nullable
+        private volatile ConcurrentMap<String, Node> children;
+
+        private Node(@Nullable Node parent, String name) {
+            this.parent = parent;
+            this.name = Objects.requireNonNull(name);
+        }
+
+        /**
+         * Returns the most specific scheme in this node.
+         */
+        public String getScheme() {
+            return getRoot().scheme();
+        }
+
+        /**
+         * Returns the most specific name in this node.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the directory level parent node. If this node is a root, the container node is returned.
+         *
+         * @see HID#getParent()
+         */
+        @Nullable
+        public Node getParent() {
+            return parent;
+        }
+
+        /**
+         * Returns the directory level root node.
+         *
+         * @see HID#getRoot()
+         */
+        public Node getRoot() {
+            Node node = this;
+            while (!node.isRoot()) {
+                node = node.parent;
+            }
+            return node;
+        }
+
+        /**
+         * Returns {@code true} if this node represents a root at the current nesting level.
+         */
+        public boolean isRoot() {
+            return false;
+        }
+
+        /**
+         * Returns the container node.
+         *
+         * @see HID#getContainer()
+         */
+        @Nullable
+        public Node getContainer() {
+            return getRoot().parent;
+        }
+
+        /**
+         * Returns {@code true} if this node has a container.
+         */
+        public boolean hasContainer() {
+            return getContainer() != null;
+        }
+
+        /**
+         * Returns the base node.
+         *
+         * @see HID#getBase()
+         */
+        public Node getBase() {
+            Node base = this;
+            Node container = getContainer();
+            while (container != null) {
+                base = container;
+                container = container.getContainer();
+            }
+            return base;
+        }
+
+        /**
+         * Determines if the supplied node is an ancestor of this node.
+         *
+         * @see HID#isAncestor(HID)
+         */
+        public boolean isAncestor(Node other) {
+            for (Node node = parent; node != null; node = node.parent) {
+                if (node == other) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the HID represented by this node.
+         */
+        public HID toHID() {
+            int nesting = 0;
+            for (Node container = getContainer(); container != null; container = container.getContainer()) {
+                nesting++;
+            }
+
+            String[] schemes = new String[nesting + 1];
+            String[] authorities = new String[nesting + 1];
+            String[][] segments = new String[nesting + 1][];
+            Node node = this;
+            for (int i = nesting; i >= 0; --i) {
+                int depth = 0;
+                for (Node n = node; !n.isRoot(); n = n.parent) {
+                    depth++;
+                }
+                segments[i] = new String[depth];
+                while (!node.isRoot()) {
+                    segments[i][--depth] = node.name;
+                    node = node.parent;
+                }
+                schemes[i] = node.scheme();
+                authorities[i] = node.authority();
+                node = node.parent;
+            }
+            return HID.create(schemes, authorities, segments);
+        }
+
+        @Override
+        public String toString() {
+            return toHID().toString();
+        }
+
+        String scheme() {
+            throw new IllegalStateException("not a root");
+        }
+
+        String authority() {
+            throw new IllegalStateException("not a root");
+        }
+
+        /**
+         * Returns the child node, or {@code null} if it does not exist.
+         */
+        @Nullable
+        private Node child(String key) {
+            ConcurrentMap<String, Node> children = this.children;
+            return children != null ? children.get(key) : null;
+        }
+
+        /**
+         * Returns the child node, creating it if necessary.
+         */
+        private Node child(String key, Node newChild, LongAdder size) {
+            ConcurrentMap<String, Node> children = this.children;
+            if (children == null) {
+                synchronized (this) {
+                    children = this.children;
+                    if (children == null) {
+                        this.children = children = new ConcurrentHashMap<>(4);
+                    }
+                }
+            }
+            Node child = children.putIfAbsent(key, newChild);
+            if (child == null) {
+                size.increment();
+                return newChild;
+            }
+            return child;
+        }
+    }
+
+    /**
+     * A root node, this is the only type of node that needs to retain the scheme and authority.
+     */
+    private static final class RootNode extends Node {
+
+        private final String scheme;
+
+        private final String authority;
+
+        private RootNode(@Nullable Node container, String scheme, String authority) {
+            super(container, "/");
+            this.scheme = Objects.requireNonNull(scheme);
+            this.authority = Objects.requireNonNull(authority);
+        }
+
+        @Override
+        public boolean isRoot() {
+            return true;
+        }
+
+        @Override
+        String scheme() {
+            return scheme;
+        }
+
+        @Override
+        String authority() {
+            return authority;
+        }
+    }
+
+    /**
+     * Returns the key used to find a root node.
+     */
+    private static String rootKey(String scheme, String authority) {
+        // The separator cannot appear in a path segment so root keys never collide with path keys
+        return authority.isEmpty() ? scheme + ":/" : scheme + "://" + authority;
+    }
+
+    /**
+     * The top-level node, this node is never exposed.
+     */
+    private final Node bases = new Node(null, "");
+
+    /**
+     * The number of nodes in this tree.
+     */
+    private final LongAdder size = new LongAdder();
+
+    public HIDTree() {
+    }
+
+    /**
+     * Adds the supplied HID to this tree, returning the canonical node representing it.
+     */
+    public Node add(HID hid) {
+        Node node = bases;
+        for (int i = 0; i <= hid.nesting(); ++i) {
+            String scheme = hid.scheme(i);
+            String authority = hid.authority(i);
+            String key = rootKey(scheme, authority);
+            Node root = node.child(key);
+            node = root != null ? root : node.child(key, new RootNode(i > 0 ? node : null, scheme, authority), size);
+            for (String segment : hid.segments(i)) {
+                Node child = node.child(segment);
+                node = child != null ? child : node.child(segment, new Node(node, segment), size);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Returns the node representing the supplied HID, or {@code null} if the HID has not been added to this tree.
+     */
+    @Nullable
+    public Node get(HID hid) {
+        Node node = bases;
+        for (int i = 0; i <= hid.nesting() && node != null; ++i) {
+            node = node.child(rootKey(hid.scheme(i), hid.authority(i)));
+            String[] segments = hid.segments(i);
+            for (int j = 0; j < segments.length && node != null; ++j) {
+                node = node.child(segments[j]);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Returns {@code true} if the supplied HID is represented in this tree.
+     */
+    public boolean contains(HID hid) {
+        return get(hid) != null;
+    }
+
+    /**
+     * Returns the number of nodes in this tree, including all of the intermediate nodes.
+     */
+    public long size() {
+        return size.sum();
+    }
+
+}
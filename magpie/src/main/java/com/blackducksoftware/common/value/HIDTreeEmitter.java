@@ -0,0 +1,167 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.value;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+
+/**
+ * Emits tree events for a stream of HIDs sorted in pre-order. Only the current path from the root is retained, so
+ * memory usage is proportional to the depth of the tree rather then the number of HIDs.
+ * <p>
+ * The input must be sorted using the ordering of a {@link HIDSet}: this is the same as {@link HID#preOrder()} except
+ * that HIDs which only differ by scheme or authority are placed in separate subtrees instead of comparing as equal.
+ * <p>
+ * Events are only generated for the HIDs which are present in the input; missing intermediate directories are not
+ * synthesized. Duplicate HIDs are ignored.
+ *
+ * @author jgustie
+ */
+public final class HIDTreeEmitter {
+
+    /**
+     * Receives tree events. Every HID is entered before any of its descendants and left after all of its descendants.
+     */
+    public interface Listener {
+
+        /**
+         * Called when a HID is encountered, prior to any of its descendants.
+         */
+        default void enter(HID hid) {
+        }
+
+        /**
+         * Called after all of the descendants of the supplied HID have been left.
+         */
+        default void leave(HID hid) {
+        }
+    }
+
+    private final Iterator<HID> hids;
+
+    private final Deque<HID> path = new ArrayDeque<>();
+
+    @Nullable
+    private HID previous;
+
+    private HIDTreeEmitter(Iterator<HID> hids) {
+        this.hids = Objects.requireNonNull(hids);
+    }
+
+    /**
+     * Advances to the next HID, leaving everything on the current path that is not an ancestor. Returns {@code false}
+     * if there are no more HIDs.
+     */
+    private boolean advance(Listener listener) {
+        while (hids.hasNext()) {
+            HID hid = hids.next();
+            if (previous != null) {
+                int order = HIDSet.ORDER.compare(previous, hid);
+                checkArgument(order <= 0, "input is not in pre-order: %s is before %s", previous, hid);
+                if (order == 0) {
+                    continue;
+                }
+            }
+            while (!path.isEmpty() && !HIDSet.isDescendant(hid, path.peek())) {
+                listener.leave(path.pop());
+            }
+            path.push(hid);
+            previous = hid;
+            listener.enter(hid);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Leaves everything on the current path.
+     */
+    private void finish(Listener listener) {
+        while (!path.isEmpty()) {
+            listener.leave(path.pop());
+        }
+    }
+
+    /**
+     * Emits the tree events for the supplied pre-order sorted HIDs.
+     *
+     * @throws IllegalArgumentException
+     *             if the HIDs are not sorted
+     */
+    public static void emit(Iterator<HID> hids, Listener listener) {
+        Objects.requireNonNull(listener);
+        HIDTreeEmitter emitter = new HIDTreeEmitter(hids);
+        while (emitter.advance(listener)) {
+            // Listener is invoked during the advance
+        }
+        emitter.finish(listener);
+    }
+
+    /**
+     * Emits the tree events for the supplied pre-order sorted HIDs.
+     *
+     * @see #emit(Iterator, Listener)
+     */
+    public static void emit(Iterable<HID> hids, Listener listener) {
+        emit(hids.iterator(), listener);
+    }
+
+    /**
+     * Lazily re-orders the supplied pre-order sorted HIDs into post-order (i.e. the order they are left).
+     *
+     * @see HID#postOrder()
+     */
+    public static Iterator<HID> toPostOrder(Iterator<HID> hids) {
+        HIDTreeEmitter emitter = new HIDTreeEmitter(hids);
+        Deque<HID> left = new ArrayDeque<>();
+        Listener listener = new Listener() {
+            @Override
+            public void leave(HID hid) {
+                left.add(hid);
+            }
+        };
+        return new Iterator<HID>() {
+            private boolean finished;
+
+            @Override
+            public boolean hasNext() {
+                while (left.isEmpty() && !finished) {
+                    if (!emitter.advance(listener)) {
+                        emitter.finish(listener);
+                        finished = true;
+                    }
+                }
+                return !left.isEmpty();
+            }
+
+            @Override
+            public HID next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return left.remove();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.io;
+
+import static com.blackducksoftware.common.test.ByteBufferSubject.assertThat;
+import static com.blackducksoftware.common.test.SeekableByteChannelSubject.assertThat;
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link OffHeapChannel}.
+ *
+ * @author jgustie
+ */
+public class OffHeapChannelTest {
+
+    /**
+     * Verify we behave correctly when closed.
+     */
+    @Test
+    public void closing() throws IOException {
+        assertThat(new OffHeapChannel()).hasIdempotentClose();
+        assertThat(new OffHeapChannel()).failsWhenClosed();
+    }
+
+    /**
+     * Negative position is illegal.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void positionNegative() throws IOException {
+        try (OffHeapChannel c = new OffHeapChannel()) {
+            c.position(-1L);
+        }
+    }
+
+    /**
+     * Position is not bounded to {@value Integer#MAX_VALUE}.
+     */
+    @Test
+    public void positionPastIntegerMax() throws IOException {
+        try (OffHeapChannel c = new OffHeapChannel()) {
+            c.position(Integer.MAX_VALUE + 1001L);
+            assertThat(c).isPositionedAt(Integer.MAX_VALUE + 1001L);
+            assertThat(c.read(ByteBuffer.allocate(1))).isEqualTo(-1);
+        }
+    }
+
+    /**
+     * Writes and reads span multiple chunks.
+     */
+    @Test
+    public void writeReadBackAcrossChunks() throws IOException {
+        byte[] data = new byte[] { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0A };
+        try (OffHeapChannel c = new OffHeapChannel(new OffHeapChannel.Pool(4, 0))) {
+            assertThat(c.write(ByteBuffer.wrap(data, 0, 3))).isEqualTo(3);
+            assertThat(c.write(ByteBuffer.wrap(data, 3, 7))).isEqualTo(7);
+            assertThat(c).hasSize(data.length);
+            assertThat(c.read(ByteBuffer.allocate(1))).isEqualTo(-1);
+            c.position(1L);
+
+            ByteBuffer buffer = ByteBuffer.allocate(data.length);
+            assertThat(c.read(buffer)).isEqualTo(data.length - 1);
+            buffer.flip();
+            assertThat(buffer).hasNextBytes(new byte[] { 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0A });
+        }
+    }
+
+    /**
+     * Writing past the end of the channel leaves zeros, even when the chunks are reused.
+     */
+    @Test
+    public void writePastSize() throws IOException {
+        OffHeapChannel.Pool pool = new OffHeapChannel.Pool(4, 4);
+        try (OffHeapChannel c = new OffHeapChannel(pool)) {
+            c.write(ByteBuffer.wrap(new byte[] { 0x01, 0x01, 0x01, 0x01, 0x01, 0x01 }));
+        }
+        assertThat(pool.pooledCount()).isEqualTo(2);
+        try (OffHeapChannel c = new OffHeapChannel(pool)) {
+            c.position(5L);
+            c.write(ByteBuffer.wrap(new byte[] { 0x02 }));
+            assertThat(c).hasSize(6L);
+            assertThat(pool.pooledCount()).isEqualTo(0);
+            c.position(0L);
+
+            ByteBuffer buffer = ByteBuffer.allocate(6);
+            assertThat(c.read(buffer)).isEqualTo(6);
+            buffer.flip();
+            assertThat(buffer).hasNextBytes(new byte[] { 0x00, 0x00, 0x00, 0x00, 0x00, 0x02 });
+        }
+    }
+
+    /**
+     * Truncating releases chunks and does not expose the truncated data.
+     */
+    @Test
+    public void truncate() throws IOException {
+        OffHeapChannel.Pool pool = new OffHeapChannel.Pool(4, 4);
+        try (OffHeapChannel c = new OffHeapChannel(pool)) {
+            c.write(ByteBuffer.wrap(new byte[] { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09 }));
+            c.truncate(3L);
+            assertThat(c).hasSize(3L);
+            assertThat(c).isPositionedAt(3L);
+            assertThat(pool.pooledCount()).isEqualTo(2);
+
+            // Growing with truncate has no effect
+            c.truncate(10L);
+            assertThat(c).hasSize(3L);
+
+            c.position(5L);
+            c.write(ByteBuffer.wrap(new byte[] { 0x0A }));
+            c.position(0L);
+            ByteBuffer buffer = ByteBuffer.allocate(10);
+            assertThat(c.read(buffer)).isEqualTo(6);
+            buffer.flip();
+            assertThat(buffer).hasNextBytes(new byte[] { 0x01, 0x02, 0x03, 0x00, 0x00, 0x0A });
+        }
+        assertThat(pool.pooledCount()).isEqualTo(3);
+    }
+
+}
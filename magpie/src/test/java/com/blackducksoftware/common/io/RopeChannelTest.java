@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.io;
+
+import static com.blackducksoftware.common.test.ByteBufferSubject.assertThat;
+import static com.blackducksoftware.common.test.SeekableByteChannelSubject.assertThat;
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Tests for the {@link RopeChannel}.
+ *
+ * @author jgustie
+ */
+public class RopeChannelTest {
+
+    /**
+     * Verify we behave correctly when closed.
+     */
+    @Test
+    public void closing() throws IOException {
+        assertThat(new RopeChannel()).hasIdempotentClose();
+        assertThat(new RopeChannel()).failsWhenClosed();
+    }
+
+    /**
+     * Position is not bounded to {@value Integer#MAX_VALUE}.
+     */
+    @Test
+    public void positionPastIntegerMax() throws IOException {
+        try (RopeChannel c = new RopeChannel()) {
+            c.position(Integer.MAX_VALUE + 1001L);
+            assertThat(c).isPositionedAt(Integer.MAX_VALUE + 1001L);
+            assertThat(c.read(ByteBuffer.allocate(1))).isEqualTo(-1);
+        }
+    }
+
+    /**
+     * If we write past the current size, the channel grows by adding chunks.
+     */
+    @Test
+    public void writeGrow() throws IOException {
+        byte[] data = new byte[] { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06 };
+        try (RopeChannel c = new RopeChannel(4)) {
+            assertThat(c.write(ByteBuffer.wrap(data, 0, 1))).isEqualTo(1);
+            assertThat(c.write(ByteBuffer.wrap(data, 1, 5))).isEqualTo(5);
+            assertThat(c).hasSize(data.length);
+            c.position(0L);
+
+            ByteBuffer buffer = ByteBuffer.allocate(data.length + 1);
+            assertThat(c.read(buffer)).isEqualTo(data.length);
+            buffer.flip();
+            assertThat(buffer).hasNextBytes(data);
+        }
+    }
+
+    /**
+     * The contents can be viewed across chunks without copying.
+     */
+    @Test
+    public void toByteBuffers() throws IOException {
+        byte[] data = new byte[] { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06 };
+        try (RopeChannel c = new RopeChannel(4)) {
+            c.write(ByteBuffer.wrap(data));
+            ByteBuffer[] buffers = c.toByteBuffers();
+            assertThat(buffers).hasLength(2);
+            assertThat(buffers[0]).hasNextBytes(new byte[] { 0x01, 0x02, 0x03, 0x04 });
+            assertThat(buffers[1]).hasNextBytes(new byte[] { 0x05, 0x06 });
+            assertThat(buffers[1]).hasRemaining(2);
+
+            // Overwriting existing content is visible
+            c.position(4L).write(ByteBuffer.wrap(new byte[] { 0x07 }));
+            assertThat(buffers[1]).hasNextBytes(new byte[] { 0x07, 0x06 });
+        }
+    }
+
+    /**
+     * The contents can be flattened into a single buffer.
+     */
+    @Test
+    public void toByteBuffer() throws IOException {
+        byte[] data = new byte[] { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06 };
+        try (RopeChannel c = new RopeChannel(4)) {
+            assertThat(c.toByteBuffer()).hasRemaining(0);
+            c.write(ByteBuffer.wrap(data, 0, 3));
+            assertThat(c.toByteBuffer()).hasNextBytes(new byte[] { 0x01, 0x02, 0x03 });
+            c.write(ByteBuffer.wrap(data, 3, 3));
+            ByteBuffer buffer = c.toByteBuffer();
+            assertThat(buffer).hasRemaining(data.length);
+            assertThat(buffer).hasNextBytes(data);
+        }
+    }
+
+    /**
+     * The input stream reads across chunks.
+     */
+    @Test
+    public void getInputStream() throws IOException {
+        byte[] data = new byte[] { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09 };
+        try (RopeChannel c = new RopeChannel(4)) {
+            c.write(ByteBuffer.wrap(data));
+            try (InputStream in = c.getInputStream()) {
+                c.write(ByteBuffer.wrap(data));
+                assertThat(ByteStreams.toByteArray(in)).isEqualTo(data);
+            }
+        }
+    }
+
+}
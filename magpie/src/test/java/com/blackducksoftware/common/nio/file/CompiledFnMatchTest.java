@@ -0,0 +1,155 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.nio.file;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.util.EnumSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.blackducksoftware.common.nio.file.FnMatch.Flag;
+
+/**
+ * Tests for the {@code CompiledFnMatch}.
+ *
+ * @author jgustie
+ */
+public class CompiledFnMatchTest {
+
+    private static boolean matches(String pattern, String string, Flag... flags) {
+        EnumSet<Flag> flagSet = flags.length == 0 ? EnumSet.noneOf(Flag.class) : EnumSet.of(flags[0], flags);
+        boolean result = CompiledFnMatch.compile(pattern, flagSet).matches(string);
+        assertWithMessage(String.format("fnmatch('%s', '%s', %s)", pattern, string, flagSet))
+                .that(result).isEqualTo(FnMatch.fnmatch(pattern, string, flagSet));
+        return result;
+    }
+
+    @Test
+    public void literal() {
+        assertThat(matches("foo", "foo")).isTrue();
+        assertThat(matches("foo", "fo")).isFalse();
+        assertThat(matches("foo", "fooo")).isFalse();
+        assertThat(matches("FOO", "foo")).isFalse();
+        assertThat(matches("FOO", "foo", Flag.CASEFOLD)).isTrue();
+        assertThat(matches("\\*", "*")).isTrue();
+        assertThat(matches("\\*", "a")).isFalse();
+        assertThat(matches("\\*", "\\*", Flag.NOESCAPE)).isTrue();
+        assertThat(matches("foo\\", "foo\\")).isTrue();
+    }
+
+    @Test
+    public void wildcards() {
+        assertThat(matches("*.txt", "foo.txt")).isTrue();
+        assertThat(matches("*.txt", "foo.txt.bak")).isFalse();
+        assertThat(matches("f?o", "foo")).isTrue();
+        assertThat(matches("*a*b*c", "aXbYbZc")).isTrue();
+        assertThat(matches("*a*b*c", "aXbYbZcd")).isFalse();
+        assertThat(matches("*", "")).isTrue();
+        assertThat(matches("?", "")).isFalse();
+    }
+
+    @Test
+    public void pathname() {
+        assertThat(matches("*.txt", "foo/bar.txt")).isTrue();
+        assertThat(matches("*.txt", "foo/bar.txt", Flag.PATHNAME)).isFalse();
+        assertThat(matches("*/*.txt", "foo/bar.txt", Flag.PATHNAME)).isTrue();
+        assertThat(matches("foo/*", "foo/bar/gus", Flag.PATHNAME)).isFalse();
+        assertThat(matches("foo/*", "foo/bar/gus", Flag.PATHNAME, Flag.LEADING_DIR)).isTrue();
+        assertThat(matches("foo", "foo/bar", Flag.LEADING_DIR)).isTrue();
+        assertThat(matches("f?o/bar", "f/o/bar", Flag.PATHNAME)).isFalse();
+        assertThat(matches("*a/b", "xxa/b", Flag.PATHNAME)).isTrue();
+        assertThat(matches("[/]", "/", Flag.PATHNAME)).isFalse();
+        assertThat(matches("*[/]", "a/", Flag.PATHNAME)).isFalse();
+    }
+
+    @Test
+    public void period() {
+        assertThat(matches("*", ".profile", Flag.PERIOD)).isFalse();
+        assertThat(matches(".*", ".profile", Flag.PERIOD)).isTrue();
+        assertThat(matches("?profile", ".profile", Flag.PERIOD)).isFalse();
+        assertThat(matches("*/*", "home/.profile", Flag.PATHNAME, Flag.PERIOD)).isFalse();
+        assertThat(matches("*/*", "home/.profile", Flag.PATHNAME)).isTrue();
+        assertThat(matches("h*e/*", "home/.profile", Flag.PATHNAME, Flag.PERIOD)).isTrue();
+    }
+
+    @Test
+    public void brackets() {
+        assertThat(matches("[abc]", "b")).isTrue();
+        assertThat(matches("[!abc]", "b")).isFalse();
+        assertThat(matches("[^abc]", "d")).isTrue();
+        assertThat(matches("[a-c]x", "bx")).isTrue();
+        assertThat(matches("[A-C]", "b", Flag.CASEFOLD)).isTrue();
+        assertThat(matches("[]a]", "]")).isTrue();
+        assertThat(matches("[!]a]", "]")).isFalse();
+        assertThat(matches("[a-]", "-")).isTrue();
+        assertThat(matches("[a-\\]]", "]")).isFalse();
+        assertThat(matches("[\\]]", "]")).isTrue();
+        assertThat(matches("[a-\\z]", "m")).isTrue();
+        assertThat(matches("[ab", "[ab")).isTrue();
+        assertThat(matches("[", "[")).isTrue();
+        assertThat(matches("[!", "[!")).isTrue();
+        assertThat(matches("[a\\", "[a\\")).isTrue();
+    }
+
+    @Test
+    public void casefold() {
+        assertThat(matches("*.TXT", "Foo.txt", Flag.CASEFOLD)).isTrue();
+        assertThat(matches("[A-C]x", "bX", Flag.CASEFOLD)).isTrue();
+        assertThat(matches("\u00C9T\u00C9", "\u00E9t\u00E9", Flag.CASEFOLD)).isTrue();
+        assertThat(matches("*.txt", "FOO.TXT")).isFalse();
+        assertThat(CompiledFnMatch.foldCase("foo.txt")).isSameAs("foo.txt");
+        assertThat(CompiledFnMatch.foldCase("Foo.\u00C9")).isEqualTo("foo.\u00E9");
+    }
+
+    @Test
+    public void supplementaryCharacters() {
+        // These are compared by code point, unlike FnMatch
+        String emoji = new String(Character.toChars(0x1F600));
+        assertThat(CompiledFnMatch.compile("?", EnumSet.noneOf(Flag.class)).matches(emoji)).isTrue();
+        assertThat(CompiledFnMatch.compile("a?b", EnumSet.noneOf(Flag.class)).matches("a" + emoji + "b")).isTrue();
+        assertThat(CompiledFnMatch.compile("*" + emoji, EnumSet.noneOf(Flag.class)).matches("ab" + emoji)).isTrue();
+        assertThat(CompiledFnMatch.compile("[" + emoji + "]", EnumSet.noneOf(Flag.class)).matches(emoji)).isTrue();
+        String deseret = new String(Character.toChars(0x10400));
+        String deseretLower = new String(Character.toChars(0x10428));
+        assertThat(CompiledFnMatch.compile(deseret, EnumSet.of(Flag.CASEFOLD)).matches(deseretLower)).isTrue();
+    }
+
+    @Test
+    public void random() {
+        Random random = new Random(0);
+        String patternChars = "abB.*?/[]!-\\";
+        String stringChars = "aAb./]-";
+        for (int i = 0; i < 200000; ++i) {
+            StringBuilder pattern = new StringBuilder();
+            for (int j = random.nextInt(8); j > 0; --j) {
+                pattern.append(patternChars.charAt(random.nextInt(patternChars.length())));
+            }
+            StringBuilder string = new StringBuilder();
+            for (int j = random.nextInt(8); j > 0; --j) {
+                string.append(stringChars.charAt(random.nextInt(stringChars.length())));
+            }
+            Flag[] flags = new Flag[random.nextInt(Flag.values().length + 1)];
+            for (int j = 0; j < flags.length; ++j) {
+                flags[j] = Flag.values()[random.nextInt(Flag.values().length)];
+            }
+            matches(pattern.toString(), string.toString(), flags);
+        }
+    }
+
+}
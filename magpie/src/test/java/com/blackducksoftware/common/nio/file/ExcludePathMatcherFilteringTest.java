@@ -26,6 +26,8 @@ import java.nio.file.PathMatcher;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 
@@ -156,6 +158,148 @@ public class ExcludePathMatcherFilteringTest {
         }
     }
 
+    @Test
+    public void excludePerDirectory_readOnce() throws Exception {
+        try (FileSystem files = new FileSystemBuilder()
+                .addHelloWorld("/foo/bar/test1.txt")
+                .addHelloWorld("/foo/bar/test2.txt")
+                .addHelloWorld("/foo/gus/test1.txt")
+                .addHelloWorld("/foo/gus/test3.txt")
+                .addFile("/excludePerDir", "test1.txt")
+                .addFile("/foo/excludePerDir", "test2.txt")
+                .build()) {
+            // Each exclude file is read once and the cache is emptied as the walk finishes each directory
+            ExcludePathMatcher matcher = filter(files).exclude("excludePerDir").excludePerDirectory("excludePerDir").build();
+            FileCollector result = walkFileTree(files, matcher);
+            assertThat(result).containsExactly("/foo/gus/test3.txt");
+            assertThat(matcher.patternStats().fileReadCount()).isEqualTo(2L);
+            assertThat(matcher.patternStats().directoryCount()).isEqualTo(0L);
+        }
+    }
+
+    @Test
+    public void excludePerDirectory_notReadWhenExcludedFromTop() throws Exception {
+        try (FileSystem files = new FileSystemBuilder()
+                .addHelloWorld("/foo/bar/test.log")
+                .addFile("/excludePerDir", "test.txt")
+                .addFile("/foo/bar/excludePerDir", "test.txt")
+                .build()) {
+            // A top level pattern decides the path without reading any exclude files
+            ExcludePathMatcher matcher = filter(files).exclude("*.log").excludePerDirectory("excludePerDir").build();
+            Path directory = files.getPath("/foo/bar");
+            assertThat(matcher.matches(directory.resolve("test.log"))).isFalse();
+            BitSet included = new BitSet();
+            matcher.matchAll(directory, Arrays.asList("a.log", "b.log"), included);
+            assertThat(included.isEmpty()).isTrue();
+            assertThat(matcher.patternStats().fileReadCount()).isEqualTo(0L);
+
+            assertThat(matcher.matches(directory.resolve("test.txt"))).isFalse();
+            assertThat(matcher.patternStats().fileReadCount()).isEqualTo(2L);
+        }
+    }
+
+    @Test
+    public void excludeFromTop_literalsAndExtensions() throws Exception {
+        try (FileSystem files = new FileSystemBuilder()
+                .addHelloWorld("/foo/a.txt")
+                .addHelloWorld("/foo/keep.txt")
+                .addHelloWorld("/foo/b.tar.gz")
+                .addHelloWorld("/foo/c.log")
+                .addHelloWorld("/foo/d.txt")
+                .addHelloWorld("/foo/e.log/test.txt")
+                .addHelloWorld("/foo/f.gz")
+                .build()) {
+            // Literal names and extensions are indexed, but the negated pattern must still be evaluated first
+            FileCollector result = walkFileTree(files, filter(files)
+                    .exclude("*.txt").exclude("!keep.txt").exclude("*.tar.gz").exclude("c.log").exclude("*.log/").exclude("?.g?")
+                    .build());
+            assertThat(result).containsExactly("/foo/keep.txt");
+        }
+    }
+
+    @Test
+    public void excludeFromTop_patternTypes() throws Exception {
+        try (FileSystem files = new FileSystemBuilder()
+                .addHelloWorld("/node_modules/x.js")
+                .addHelloWorld("/buildx/a.txt")
+                .addHelloWorld("/a/b.class")
+                .addHelloWorld("/out/o.txt")
+                .addHelloWorld("/a/out/keep.txt")
+                .addHelloWorld("/src/gen/g.java")
+                .addHelloWorld("/src/main/m.java")
+                .addHelloWorld("/z.tmp")
+                .addHelloWorld("/keep.txt")
+                .build()) {
+            ExcludePathMatcher matcher = filter(files)
+                    .exclude("node_modules").exclude("build*").exclude("*.class").exclude("/out").exclude("src/gen").exclude("?.tmp")
+                    .build();
+            FileCollector result = walkFileTree(files, matcher);
+            assertThat(result).containsExactly("/a/out/keep.txt", "/src/main/m.java", "/keep.txt");
+
+            ExcludePathMatcher.PatternStats stats = matcher.patternStats();
+            assertThat(stats.patternCount(ExcludePathMatcher.PatternType.NAME)).isEqualTo(1L);
+            assertThat(stats.patternCount(ExcludePathMatcher.PatternType.PREFIX)).isEqualTo(1L);
+            assertThat(stats.patternCount(ExcludePathMatcher.PatternType.SUFFIX)).isEqualTo(1L);
+            assertThat(stats.patternCount(ExcludePathMatcher.PatternType.PATH)).isEqualTo(2L);
+            assertThat(stats.patternCount(ExcludePathMatcher.PatternType.GLOB)).isEqualTo(1L);
+            assertThat(stats.matchCount(ExcludePathMatcher.PatternType.PATH)).isEqualTo(2L);
+            assertThat(stats.matchCount(ExcludePathMatcher.PatternType.GLOB)).isEqualTo(1L);
+            assertThat(stats.globEvaluationCount()).isAtMost(stats.pathCount());
+        }
+    }
+
+    @Test
+    public void excludeFromTop_ignoringCase() throws Exception {
+        try (FileSystem files = new FileSystemBuilder()
+                .addHelloWorld("/Node_Modules/a.js")
+                .addHelloWorld("/foo/B.CLASS")
+                .addHelloWorld("/foo/Build.log")
+                .addHelloWorld("/Out/c.txt")
+                .addHelloWorld("/foo/d.TXT")
+                .addHelloWorld("/foo/e.txt")
+                .build()) {
+            FileCollector result = walkFileTree(files, filter(files).ignoringCase()
+                    .exclude("node_modules").exclude("*.class").exclude("build*").exclude("/out").exclude("?.txt").exclude("!E.txt")
+                    .build());
+            assertThat(result).containsExactly("/foo/e.txt");
+        }
+    }
+
+    @Test
+    public void excludeFromTop_suppliedAttributes() throws Exception {
+        try (FileSystem files = new FileSystemBuilder().addHelloWorld("/foo/bar/test.txt").build()) {
+            // Directory-only patterns use the supplied attributes instead of the file system
+            ExcludePathMatcher matcher = filter(files).exclude("*.txt/").build();
+            Path file = files.getPath("/foo/bar/test.txt");
+            BasicFileAttributes directoryAttrs = Files.readAttributes(file.getParent(), BasicFileAttributes.class);
+            assertThat(matcher.matches(file)).isTrue();
+            assertThat(matcher.matches(file, directoryAttrs)).isFalse();
+        }
+    }
+
+    @Test
+    public void excludePerDirectory_matchAll() throws Exception {
+        try (FileSystem files = new FileSystemBuilder()
+                .addHelloWorld("/foo/bar/a.txt")
+                .addHelloWorld("/foo/bar/b.log")
+                .addHelloWorld("/foo/bar/c.txt")
+                .addHelloWorld("/foo/bar/gus/d.txt")
+                .addFile("/foo/excludePerDir", "c.txt")
+                .build()) {
+            ExcludePathMatcher matcher = filter(files).exclude("*.log").exclude("foo/*/a.*").exclude("foo/b*/gus/")
+                    .excludePerDirectory("excludePerDir").build();
+            Path directory = files.getPath("/foo/bar");
+            List<String> names = Arrays.asList("a.txt", "b.log", "c.txt", "gus", "e.txt");
+            BitSet included = new BitSet();
+            included.set(0, names.size());
+            matcher.matchAll(directory, names, included);
+            for (int i = 0; i < names.size(); ++i) {
+                assertThat(included.get(i)).named(names.get(i)).isEqualTo(matcher.matches(directory.resolve(names.get(i))));
+            }
+            assertThat(included).isEqualTo(BitSet.valueOf(new long[] { 0b10000L }));
+        }
+    }
+
     @Test
     public void excludeFromTop_anchoredDirectoryWindows() throws Exception {
         try (FileSystem files = new FileSystemBuilder().asWindows().addHelloWorld("/foo/bar/gus/test.txt").build()) {
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.nio.file;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the {@code ExcludeRulesWatcher}.
+ *
+ * @author jgustie
+ */
+public class ExcludeRulesWatcherTest {
+
+    private Path top;
+
+    @Before
+    public void createTemporaryDirectory() throws IOException {
+        top = Files.createTempDirectory("exclude");
+    }
+
+    @After
+    public void deleteTemporaryDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(top)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = top.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Waits for the watch service to report at least one change.
+     */
+    private static List<ExcludeRulesWatcher.Change> changes(ExcludeRulesWatcher watcher) throws Exception {
+        List<ExcludeRulesWatcher.Change> changes = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (changes.isEmpty() && System.nanoTime() < deadline) {
+            changes.addAll(watcher.poll(1, TimeUnit.SECONDS));
+        }
+        return changes;
+    }
+
+    @Test
+    public void editExcludeFile() throws Exception {
+        write("foo/a.txt", "a");
+        write("foo/b.log", "b");
+        write("foo/build/c.txt", "c");
+        write("foo/.ignore", "*.log\n");
+        ExcludePathMatcher matcher = new ExcludePathMatcher.Builder().from(top).excludePerDirectory(".ignore").build();
+        assertThat(matcher.matches(top.resolve("foo/build"))).isTrue();
+        assertThat(matcher.matches(top.resolve("foo/b.log"))).isFalse();
+
+        try (ExcludeRulesWatcher watcher = new ExcludeRulesWatcher(matcher)) {
+            watcher.registerTree(top);
+            write("foo/.ignore", "build/\n");
+
+            List<ExcludeRulesWatcher.Change> changes = changes(watcher);
+            assertThat(changes).hasSize(2);
+            for (ExcludeRulesWatcher.Change change : changes) {
+                if (change.path().equals(top.resolve("foo/build"))) {
+                    assertThat(change.isIncluded()).isFalse();
+                } else {
+                    assertThat(change.path()).isEqualTo(top.resolve("foo/b.log"));
+                    assertThat(change.isIncluded()).isTrue();
+                }
+            }
+            assertThat(matcher.matches(top.resolve("foo/build"))).isFalse();
+            assertThat(matcher.matches(top.resolve("foo/b.log"))).isTrue();
+        }
+    }
+
+    @Test
+    public void watchIncludedDirectory() throws Exception {
+        write("foo/build/c.txt", "c");
+        write("foo/build/d.log", "d");
+        write("foo/.ignore", "build/\n");
+        ExcludePathMatcher matcher = new ExcludePathMatcher.Builder().from(top).excludePerDirectory(".ignore").build();
+
+        try (ExcludeRulesWatcher watcher = new ExcludeRulesWatcher(matcher)) {
+            watcher.registerTree(top);
+            write("foo/.ignore", "");
+
+            List<ExcludeRulesWatcher.Change> changes = changes(watcher);
+            assertThat(changes).hasSize(1);
+            assertThat(changes.get(0).path()).isEqualTo(top.resolve("foo/build"));
+            assertThat(changes.get(0).isIncluded()).isTrue();
+
+            // The directory which is now included must be watched
+            write("foo/build/.ignore", "*.log\n");
+            changes = changes(watcher);
+            assertThat(changes).hasSize(1);
+            assertThat(changes.get(0).path()).isEqualTo(top.resolve("foo/build/d.log"));
+            assertThat(changes.get(0).isIncluded()).isFalse();
+        }
+    }
+
+    @Test
+    public void previousMatcherStatistics() throws Exception {
+        write("foo/a.txt", "a");
+        ExcludePathMatcher matcher = new ExcludePathMatcher.Builder().from(top).exclude("*.log").excludePerDirectory(".ignore").build();
+        ExcludePathMatcher previous = matcher.withDirectoryFiles(Collections.emptyMap());
+        assertThat(previous.matches(top.resolve("foo/a.txt"))).isTrue();
+        assertThat(previous.patternStats().pathCount()).isGreaterThan(0L);
+        assertThat(matcher.patternStats().pathCount()).isEqualTo(0L);
+    }
+
+}
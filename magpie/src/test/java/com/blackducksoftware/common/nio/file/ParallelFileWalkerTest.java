@@ -0,0 +1,152 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.nio.file;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.blackducksoftware.common.test.FileSystemBuilder;
+import com.google.common.collect.Iterables;
+
+/**
+ * Tests for the {@code ParallelFileWalker}.
+ *
+ * @author jgustie
+ */
+public class ParallelFileWalkerTest {
+
+    private static FileSystem newFileSystem() throws IOException {
+        return new FileSystemBuilder()
+                .addHelloWorld("/foo/a.txt")
+                .addHelloWorld("/foo/bar/b.txt")
+                .addHelloWorld("/foo/bar/gus/c.txt")
+                .addHelloWorld("/foo-x/d.txt")
+                .addHelloWorld("/node_modules/e.js")
+                .addHelloWorld("/f.txt")
+                .build();
+    }
+
+    @Test
+    public void orderedStream() throws IOException {
+        try (FileSystem files = newFileSystem()) {
+            Path root = Iterables.getOnlyElement(files.getRootDirectories());
+            List<String> paths = new ParallelFileWalker.Builder().from(root).parallelism(4).ordered().build().stream()
+                    .map(Path::toString).collect(toList());
+            assertThat(paths).containsExactly("/", "/f.txt",
+                    "/foo", "/foo/a.txt", "/foo/bar", "/foo/bar/b.txt", "/foo/bar/gus", "/foo/bar/gus/c.txt",
+                    "/foo-x", "/foo-x/d.txt",
+                    "/node_modules", "/node_modules/e.js").inOrder();
+        }
+    }
+
+    @Test
+    public void unorderedStream() throws IOException {
+        try (FileSystem files = newFileSystem()) {
+            Path root = Iterables.getOnlyElement(files.getRootDirectories());
+            try (Stream<Path> stream = new ParallelFileWalker.Builder().from(root).parallelism(4).build().stream()) {
+                assertThat(stream.map(Path::toString).collect(toList())).containsExactly("/", "/f.txt",
+                        "/foo", "/foo/a.txt", "/foo/bar", "/foo/bar/b.txt", "/foo/bar/gus", "/foo/bar/gus/c.txt",
+                        "/foo-x", "/foo-x/d.txt",
+                        "/node_modules", "/node_modules/e.js");
+            }
+        }
+    }
+
+    @Test
+    public void unorderedStreamCloseEarly() throws IOException {
+        try (FileSystem files = newFileSystem()) {
+            Path root = Iterables.getOnlyElement(files.getRootDirectories());
+            try (Stream<Path> stream = new ParallelFileWalker.Builder().from(root).build().stream()) {
+                assertThat(stream.findFirst().isPresent()).isTrue();
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unorderedStreamUncheckedFailure() throws IOException {
+        try (FileSystem files = newFileSystem()) {
+            Path root = Iterables.getOnlyElement(files.getRootDirectories());
+            PathMatcher filter = path -> {
+                if (path.endsWith("gus")) {
+                    throw new IllegalStateException("filter failed: " + path);
+                }
+                return true;
+            };
+            // The stream must fail instead of ending early
+            try (Stream<Path> stream = new ParallelFileWalker.Builder().from(root).filter(filter).parallelism(4).build().stream()) {
+                stream.count();
+            }
+        }
+    }
+
+    @Test
+    public void filter() throws IOException {
+        try (FileSystem files = newFileSystem()) {
+            Path root = Iterables.getOnlyElement(files.getRootDirectories());
+            ExcludePathMatcher matcher = new ExcludePathMatcher.Builder().from(root).exclude("node_modules").exclude("gus/").build();
+            List<String> paths = new ParallelFileWalker.Builder().from(root).filter(matcher).ordered().build().stream()
+                    .map(Path::toString).collect(toList());
+            assertThat(paths).containsExactly("/", "/f.txt",
+                    "/foo", "/foo/a.txt", "/foo/bar", "/foo/bar/b.txt",
+                    "/foo-x", "/foo-x/d.txt").inOrder();
+        }
+    }
+
+    @Test
+    public void skipSubtree() throws IOException {
+        try (FileSystem files = newFileSystem()) {
+            Path root = Iterables.getOnlyElement(files.getRootDirectories());
+            Queue<String> visited = new ConcurrentLinkedQueue<>();
+            Queue<String> postVisited = new ConcurrentLinkedQueue<>();
+            new ParallelFileWalker.Builder().from(root).build().walk(new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return dir.endsWith("bar") ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    visited.add(file.toString());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                    postVisited.add(dir.toString());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            assertThat(visited).containsExactly("/foo/a.txt", "/foo-x/d.txt", "/node_modules/e.js", "/f.txt");
+            assertThat(postVisited).containsExactly("/", "/foo", "/foo-x", "/node_modules");
+            assertThat(Iterables.getLast(postVisited)).isEqualTo("/");
+        }
+    }
+
+}
@@ -23,6 +23,8 @@ import java.net.URI;
 import java.nio.file.FileSystem;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.junit.Test;
@@ -59,6 +61,35 @@ public class HidBasicTest {
         assertThat(hid.toUri().getFragment()).isEqualTo("/test.txt");
     }
 
+    @Test
+    public void toUriStringDeeplyNested() {
+        HID hid = new HID.Builder()
+                .push("file", "/foo/a.jar")
+                .push("jar", "/b.zip")
+                .push("zip", "/c.tar")
+                .push("tar", "/d.tar")
+                .push("tar", "/e f.txt")
+                .build();
+        String uriString = hid.toUriString();
+        assertThat(uriString).isEqualTo("tar:tar:zip:jar:file:%2525252F%2525252F%2525252Ffoo%2525252Fa.jar%252523%25252Fb.zip%2523%252Fc.tar%23%2Fd.tar#/e%20f.txt");
+        assertThat(hid.toUriString()).isSameAs(uriString);
+        assertThat(HID.from(uriString)).isEqualTo(hid);
+        assertThat(hid.getParent().toUriString()).isEqualTo("tar:tar:zip:jar:file:%2525252F%2525252F%2525252Ffoo%2525252Fa.jar%252523%25252Fb.zip%2523%252Fc.tar%23%2Fd.tar#/");
+        assertThat(hid.getContainer().toUriString()).isEqualTo("tar:zip:jar:file:%25252F%25252F%25252Ffoo%25252Fa.jar%2523%252Fb.zip%23%2Fc.tar#/d.tar");
+    }
+
+    @Test
+    public void toUriStringSiblings() {
+        HID container = HID.from("zip:file:%2F%2F%2Ffoo%2Fa.zip#/b.tar");
+        HID.Builder builder = container.newBuilder();
+        HID first = builder.push("tar", "/x.txt").build();
+        HID second = builder.pop().push("tar", "/y.txt").build();
+        HID third = builder.pop().resolve("/c.tar").build();
+        assertThat(first.toUriString()).isEqualTo("tar:zip:file:%252F%252F%252Ffoo%252Fa.zip%23%2Fb.tar#/x.txt");
+        assertThat(second.toUriString()).isEqualTo("tar:zip:file:%252F%252F%252Ffoo%252Fa.zip%23%2Fb.tar#/y.txt");
+        assertThat(third.toUriString()).isEqualTo("zip:file:%2F%2F%2Ffoo%2Fa.zip#/c.tar");
+    }
+
     @Test
     public void fromUriUnknownScheme() {
         // For you URI junkies out there, one slash indicates hierarchy, two means host, three means no host
@@ -454,4 +485,60 @@ public class HidBasicTest {
                 .isEqualTo("tar:file:%2F%2F%2Fz%2Fy%2Fx#/h/d/a");
     }
 
+    @Test
+    public void sharedPathSegments() {
+        HID first = HID.from("file:///shared/segments/foo.txt");
+        HID second = HID.from("file:///shared/segments/bar.txt");
+        assertThat(second.getPathNames().get(0)).isSameAs(first.getPathNames().get(0));
+        assertThat(second.getPathNames().get(1)).isSameAs(first.getPathNames().get(1));
+
+        // Equivalent segments also share the normalized instance
+        HID third = HID.from("file:///shared/fo\u0308o\u0308");
+        HID fourth = HID.from("file:///shared/f\u00f6\u00f6");
+        assertThat(fourth.getPathNames().get(1)).isSameAs(third.getPathNames().get(1));
+    }
+
+    @Test
+    public void pathCacheStats() {
+        long requestCount = HID.pathCacheStats().requestCount();
+        HID.from("file:///path/cache/stats");
+        assertThat(HID.pathCacheStats().requestCount()).isGreaterThan(requestCount);
+    }
+
+    @Test
+    public void hashCodeConsistentWithEquals() {
+        HID first = HID.from("tar:file:%2F%2F%2Ffoo%2Fa.tar#/x/y");
+        HID second = new HID.Builder().push("file", "/foo/a.tar").push("tar", "/x/y").build();
+        assertThat(second).isEqualTo(first);
+        assertThat(second.hashCode()).isEqualTo(first.hashCode());
+        assertThat(second.hashCode()).isEqualTo(first.hashCode());
+        assertThat(second.getParent()).isNotEqualTo(first);
+        assertThat(HID.from("file:///foo/a.tar")).isNotEqualTo(HID.from("http://foo/a.tar"));
+    }
+
+    @Test
+    public void canonicalSchemesAndAuthorities() {
+        HID first = HID.from("ZIP:http:%2F%2Fexample.com%2Ffoo.zip#/bar");
+        HID second = HID.from("zip:http:%2F%2Fexample.com%2Fbaz.zip#/bar");
+        assertThat(first.getScheme()).isSameAs("zip");
+        assertThat(first.getContainer().getScheme()).isSameAs("http");
+        assertThat(HID.from("custom-scheme://example.com/foo").getScheme()).isSameAs(HID.from("custom-scheme://example.com/bar").getScheme());
+        assertThat(second.authority(0)).isSameAs(first.authority(0));
+    }
+
+    @Test
+    public void childrenOf() {
+        HID container = HID.from("file:///foo/a.jar");
+        List<String> entryNames = Arrays.asList("META-INF/", "META-INF/MANIFEST.MF", "com/example/A.class", "com/example/B.class",
+                "com/example/b/../C.class", "com/D.class", "/E.txt", "F.txt", "./G.txt", "com/example/");
+        List<HID> children = HID.childrenOf(container, "jar", entryNames);
+        assertThat(children).hasSize(entryNames.size());
+        for (int i = 0; i < entryNames.size(); ++i) {
+            assertThat(children.get(i)).isEqualTo(container.newBuilder().push("jar", entryNames.get(i)).build());
+            assertThat(children.get(i).getContainer()).isEqualTo(container);
+        }
+        assertThat(children.get(3).getParent()).isEqualTo(children.get(2).getParent());
+        assertThat(children.get(4).toUriString()).isEqualTo("jar:file:%2F%2F%2Ffoo%2Fa.jar#/com/example/C.class");
+    }
+
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.value;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for the binary encoding of HIDs.
+ *
+ * @author jgustie
+ */
+public class HidCodecTest {
+
+    private static final String[] URIS = new String[] {
+            "file:///",
+            "file:///foo/bar/gus.txt",
+            "file:///foo/bar/gus.tar",
+            "tar:file:%2F%2F%2Ffoo%2Fbar%2Fgus.tar#/",
+            "tar:file:%2F%2F%2Ffoo%2Fbar%2Fgus.tar#/test.txt",
+            "tar:file:%2F%2F%2Ffoo%2Fbar%2Fgus.tar#/test/a.zip",
+            "zip:tar:file:%252Ffoo%252Fbar%252Fgus.tar%23%2Ftest%2Fa.zip#/l/m/n",
+            "file:///foo/bar/gus.txt",
+            "file://example.com/foo/bar/f%C3%B6%C3%B6",
+            "unknown:file:%2F%2F%2Ffoo#/bar",
+            "unknown:file:%2F%2F%2Ffoo#/gus",
+            "http://example.com/foo/%E2%82%AC", };
+
+    private static List<HID> hids() {
+        List<HID> hids = new ArrayList<>();
+        for (String uri : URIS) {
+            hids.add(HID.from(uri));
+        }
+        return hids;
+    }
+
+    private static byte[] toByteArray(HID hid) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        hid.writeTo(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void roundTripDataOutput() throws IOException {
+        for (HID hid : hids()) {
+            byte[] encoded = toByteArray(hid);
+            assertThat(HID.readFrom(new DataInputStream(new ByteArrayInputStream(encoded)))).isEqualTo(hid);
+            // Never larger then `DataOutput.writeUTF(hid.toUriString())`
+            assertThat(encoded.length).isAtMost(hid.toUriString().length() + 2);
+        }
+    }
+
+    @Test
+    public void roundTripByteBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        for (HID hid : hids()) {
+            hid.writeTo(buffer);
+        }
+        buffer.flip();
+        for (HID hid : hids()) {
+            assertThat(HID.readFrom(buffer)).isEqualTo(hid);
+        }
+        assertThat(buffer.hasRemaining()).isFalse();
+    }
+
+    @Test
+    public void roundTripSurrogates() throws IOException {
+        // Unpaired surrogates can come from file system paths
+        HID hid = new HID.Builder().push("file", "/foo/\ud83d\ude00/bar\ud800").build();
+        assertThat(HID.readFrom(new DataInputStream(new ByteArrayInputStream(toByteArray(hid))))).isEqualTo(hid);
+    }
+
+    @Test
+    public void sequence() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        HIDCodec.Writer writer = HIDCodec.newWriter(new DataOutputStream(bytes));
+        int individualSize = 0;
+        for (HID hid : hids()) {
+            writer.write(hid);
+            individualSize += toByteArray(hid).length;
+        }
+        assertThat(bytes.size()).isLessThan(individualSize);
+
+        HIDCodec.Reader reader = HIDCodec.newReader(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        for (HID hid : hids()) {
+            assertThat(reader.read()).isEqualTo(hid);
+        }
+        assertThat(reader.read()).isNull();
+    }
+
+    @Test
+    public void sequenceByteBuffer() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        HIDCodec.Writer writer = HIDCodec.newWriter(buffer);
+        for (HID hid : hids()) {
+            writer.write(hid);
+        }
+        buffer.flip();
+
+        HIDCodec.Reader reader = HIDCodec.newReader(buffer);
+        for (HID hid : hids()) {
+            assertThat(reader.read()).isEqualTo(hid);
+        }
+        assertThat(reader.read()).isNull();
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void unsupportedVersion() throws IOException {
+        HID.readFrom(new DataInputStream(new ByteArrayInputStream(new byte[] { 0, 1, 0, 0, 1, 0, 0 })));
+    }
+
+    @Test(expected = EOFException.class)
+    public void empty() throws IOException {
+        HID.readFrom(new DataInputStream(new ByteArrayInputStream(new byte[] { HIDCodec.VERSION })));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSchemeIndex() {
+        HID.readFrom(ByteBuffer.wrap(new byte[] { HIDCodec.VERSION, 6, 1, 0, 0, 127, 0, 0 }));
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.value;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@code HIDIndex}.
+ *
+ * @author jgustie
+ */
+public class HidIndexTest {
+
+    private static List<HID> randomHids(int count) {
+        Random random = new Random(count);
+        List<HID> hids = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            HID.Builder builder = new HID.Builder().push("file", "/" + random.nextInt(10) + "/" + random.nextInt(10) + "/a.tar");
+            for (int nesting = random.nextInt(3); nesting > 0; --nesting) {
+                builder.push("tar", "/" + random.nextInt(10) + "/" + random.nextInt(100) + ".zip");
+            }
+            hids.add(builder.build());
+        }
+        return hids;
+    }
+
+    @Test
+    public void handles() {
+        HIDIndex index = new HIDIndex();
+        HID hid = HID.from("tar:file:%2F%2F%2Ffoo%2Fa.tar#/x/y");
+        int handle = index.handleOf(hid);
+        assertThat(index.handleOf(HID.from("tar:file:%2F%2F%2Ffoo%2Fa.tar#/x/y"))).isEqualTo(handle);
+        assertThat(index.hidOf(handle)).isEqualTo(hid);
+
+        // Every ancestor gets a handle: "/", "/foo", "/foo/a.tar", "/", "/x", "/x/y"
+        assertThat(index.size()).isEqualTo(6);
+
+        int parent = index.parentHandle(handle);
+        assertThat(index.hidOf(parent)).isEqualTo(hid.getParent());
+        int root = index.parentHandle(parent);
+        assertThat(index.hidOf(root)).isEqualTo(hid.getRoot());
+        int container = index.containerHandle(handle);
+        assertThat(index.parentHandle(root)).isEqualTo(container);
+        assertThat(index.hidOf(container)).isEqualTo(hid.getContainer());
+        assertThat(index.containerHandle(container)).isEqualTo(-1);
+        assertThat(index.parentHandle(index.handleOf(HID.from("file:///")))).isEqualTo(-1);
+    }
+
+    @Test
+    public void schemesAndAuthorities() {
+        HIDIndex index = new HIDIndex();
+        int file = index.handleOf(HID.from("file:///foo"));
+        int http = index.handleOf(HID.from("http://example.com/foo"));
+        int https = index.handleOf(HID.from("https://example.com/foo"));
+        int other = index.handleOf(HID.from("http://example.org/foo"));
+        assertThat(http).isNotEqualTo(file);
+        assertThat(https).isNotEqualTo(http);
+        assertThat(other).isNotEqualTo(http);
+        assertThat(index.hidOf(other)).isEqualTo(HID.from("http://example.org/foo"));
+    }
+
+    @Test
+    public void isAncestor() {
+        HIDIndex index = new HIDIndex();
+        List<HID> hids = randomHids(200);
+        int[] handles = new int[hids.size()];
+        for (int i = 0; i < hids.size(); ++i) {
+            handles[i] = index.handleOf(hids.get(i));
+        }
+        for (int i = 0; i < hids.size(); ++i) {
+            HID hid = hids.get(i);
+            for (HID ancestor = hid; ancestor != null; ancestor = ancestor.getParent()) {
+                assertThat(index.isAncestor(handles[i], index.handleOf(ancestor))).isEqualTo(hid.isAncestor(ancestor));
+            }
+            for (int j = 0; j < hids.size(); ++j) {
+                assertThat(index.isAncestor(handles[i], handles[j])).isEqualTo(hid.isAncestor(hids.get(j)));
+            }
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void unassignedHandle() {
+        new HIDIndex().hidOf(0);
+    }
+
+    @Test
+    public void concurrentInsertion() throws Exception {
+        HIDIndex index = new HIDIndex();
+        List<HID> hids = randomHids(20000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<int[]>> results = new ArrayList<>();
+            for (int t = 0; t < 4; ++t) {
+                results.add(executor.submit(() -> {
+                    int[] handles = new int[hids.size()];
+                    for (int i = 0; i < hids.size(); ++i) {
+                        handles[i] = index.handleOf(hids.get(i));
+                    }
+                    return handles;
+                }));
+            }
+            int[] expected = results.get(0).get();
+            for (Future<int[]> result : results) {
+                assertThat(result.get()).isEqualTo(expected);
+            }
+            for (int i = 0; i < hids.size(); ++i) {
+                assertThat(index.hidOf(expected[i])).isEqualTo(hids.get(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
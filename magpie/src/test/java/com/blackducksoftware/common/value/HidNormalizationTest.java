@@ -110,4 +110,22 @@ public class HidNormalizationTest {
         assertThat(HID.from("FILE:/").getScheme()).isEqualTo("file");
     }
 
+    @Test
+    public void normalizationStats() {
+        HID.NormalizationStats before = HID.normalizationStats();
+        HID.from("file:///normalizationStats/asciiOnlySegment");
+        HID.from("file:///normalizationStats/b%C3%A4r");
+        HID.from("file:///normalizationStats/ba%CC%88z");
+        HID.NormalizationStats after = HID.normalizationStats();
+        assertThat(after.asciiCount()).isAtLeast(before.asciiCount() + 1);
+        assertThat(after.normalizedCount()).isAtLeast(before.normalizedCount() + 1);
+        assertThat(after.denormalizedCount()).isAtLeast(before.denormalizedCount() + 1);
+    }
+
+    @Test
+    public void unicodeNormalization() {
+        assertThat(HID.from("file:///fo%CC%88o%CC%88").getName()).isEqualTo("f\u00f6\u00f6");
+        assertThat(HID.from("file:///f%C3%B6%C3%B6").getName()).isEqualTo("f\u00f6\u00f6");
+    }
+
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.value;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.net.URI;
+
+import org.junit.Test;
+
+/**
+ * Tests for parsing HIDs from strings without going through {@link URI}.
+ *
+ * @author jgustie
+ */
+public class HidParsingTest {
+
+    /**
+     * Parsing a string must produce the same result as parsing the equivalent URI.
+     */
+    private static void assertParsesLikeUri(String input) {
+        HID hid = HID.parse(input);
+        HID expected = HID.of(URI.create(input));
+        assertThat(hid).isEqualTo(expected);
+        assertThat(hid.toUriString()).isEqualTo(expected.toUriString());
+    }
+
+    @Test
+    public void simple() {
+        assertParsesLikeUri("file:///foo/bar/gus.txt");
+        assertParsesLikeUri("file:/foo/bar/gus.txt");
+        assertParsesLikeUri("file:///");
+        assertParsesLikeUri("FILE:///Foo");
+        assertParsesLikeUri("test:/foo/");
+    }
+
+    @Test
+    public void nested() {
+        assertParsesLikeUri("tar:file:%2F%2F%2Ffoo%2Fbar.tar#/test.txt");
+        assertParsesLikeUri("tar:file:%2F%2F%2Ffoo%2Fbar.tar#/");
+        assertParsesLikeUri("zip:file:%2F#");
+        assertParsesLikeUri("zip:file:%2F#..");
+        assertParsesLikeUri("zip:tar:file:%252Fz%252Fy%252Fx%23%2Fh%2Fd%2Fa#/l/m/n");
+        assertParsesLikeUri("jar:file:%2F%2F%2Ffoo.zip#/bar.txt");
+        assertParsesLikeUri("test:file:%2Ffoo#/bar");
+    }
+
+    @Test
+    public void authority() {
+        assertParsesLikeUri("http://example.com/foo/bar");
+        assertParsesLikeUri("test://foo/");
+        assertParsesLikeUri("file://user%40example.com@example.com:8080/foo");
+        assertThat(HID.parse("http://example.com/foo").toUriString()).isEqualTo("http://example.com/foo");
+    }
+
+    @Test
+    public void percentEncoding() {
+        assertParsesLikeUri("file:/f%C3%B6%C3%B6");
+        assertParsesLikeUri("file:/fo%CC%88o%CC%88");
+        assertParsesLikeUri("file:/a%20b/%E2%82%AC");
+        assertParsesLikeUri("zip:file:%2Fa.zip#/%E2%82%AC%2Fb");
+        assertThat(HID.parse("file:/a%20b/%E2%82%AC").getPathNames()).containsExactly("a b", "€").inOrder();
+    }
+
+    @Test
+    public void malformedUtf8() {
+        // Invalid octet sequences are replaced, just like they are by URI
+        assertParsesLikeUri("file:/%FF%FE");
+        assertParsesLikeUri("file:/%C3x");
+        assertParsesLikeUri("file:/%E2%82");
+    }
+
+    @Test
+    public void fallback() {
+        // These are not handled by the scanner, make sure we still get the same answer
+        assertParsesLikeUri("jar:file:///foo.zip!/bar.txt");
+        assertParsesLikeUri("zip:file:%2Fa.zip#/b?c");
+        assertParsesLikeUri("zip:file:%2Fa.zip#/[b]");
+        assertParsesLikeUri("file:/é");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingScheme() {
+        HID.parse("/foo/bar");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingPath() {
+        HID.parse("file://example.com");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void opaque() {
+        HID.parse("uuid:1a766934-e1a9-48af-962d-289c215f6726");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void query() {
+        HID.parse("test:/foo?bar");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownSchemeFragment() {
+        HID.parse("test:/foo#bar");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidEscape() {
+        HID.parse("file:/foo%2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCharacter() {
+        HID.parse("file:/foo bar");
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.value;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@code HIDSet}.
+ *
+ * @author jgustie
+ */
+public class HidSetTest {
+
+    private static List<HID> randomHids(int count) {
+        Random random = new Random(count);
+        List<HID> hids = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            HID.Builder builder = new HID.Builder().push("file", "/" + random.nextInt(3) + "/" + random.nextInt(3) + ".zip");
+            for (int nesting = random.nextInt(3); nesting > 0; --nesting) {
+                builder.push("zip", random.nextBoolean() ? "/" : "/" + random.nextInt(3) + "/" + random.nextInt(3) + ".zip");
+            }
+            hids.add(builder.build());
+            if (random.nextBoolean()) {
+                hids.add(builder.build().getParent());
+            }
+        }
+        return hids;
+    }
+
+    private static List<HID> descendants(Iterable<HID> hids, HID ancestor) {
+        List<HID> result = new ArrayList<>();
+        for (HID hid : hids) {
+            if (hid.isAncestor(ancestor)) {
+                result.add(hid);
+            }
+        }
+        return result;
+    }
+
+    private static List<HID> children(Iterable<HID> hids, HID parent) {
+        List<HID> result = new ArrayList<>();
+        for (HID hid : hids) {
+            if (parent.equals(hid.getParent())) {
+                result.add(hid);
+            }
+        }
+        return result;
+    }
+
+    private static void checkSubtrees(HIDSet set, List<HID> queries) {
+        for (HID query : queries) {
+            assertThat(set.descendantsOf(query)).containsExactlyElementsIn(descendants(set, query)).inOrder();
+            assertThat(set.childrenOf(query)).containsExactlyElementsIn(children(set, query)).inOrder();
+            assertThat(set.subtreeSize(query)).isEqualTo(descendants(set, query).size() + (set.contains(query) ? 1 : 0));
+        }
+    }
+
+    @Test
+    public void subtrees() {
+        HIDSet set = HIDSet.copyOf(Arrays.asList(
+                HID.from("file:///foo"),
+                HID.from("file:///foo/a.zip"),
+                HID.from("zip:file:%2F%2F%2Ffoo%2Fa.zip#/"),
+                HID.from("zip:file:%2F%2F%2Ffoo%2Fa.zip#/x"),
+                HID.from("zip:file:%2F%2F%2Ffoo%2Fa.zip#/y/z"),
+                HID.from("file:///foo/b.txt"),
+                HID.from("file:///foo0")));
+        assertThat(set.descendantsOf(HID.from("file:///foo/a.zip"))).containsExactly(
+                HID.from("zip:file:%2F%2F%2Ffoo%2Fa.zip#/"),
+                HID.from("zip:file:%2F%2F%2Ffoo%2Fa.zip#/x"),
+                HID.from("zip:file:%2F%2F%2Ffoo%2Fa.zip#/y/z")).inOrder();
+        assertThat(set.childrenOf(HID.from("file:///foo"))).containsExactly(
+                HID.from("file:///foo/a.zip"),
+                HID.from("file:///foo/b.txt")).inOrder();
+        assertThat(set.childrenOf(HID.from("file:///foo/a.zip"))).containsExactly(HID.from("zip:file:%2F%2F%2Ffoo%2Fa.zip#/"));
+        assertThat(set.subtreeSize(HID.from("file:///foo"))).isEqualTo(6);
+        assertThat(set.subtreeSize(HID.from("file:///"))).isEqualTo(7);
+        assertThat(set.subtreeSize(HID.from("file:///bar"))).isEqualTo(0);
+    }
+
+    @Test
+    public void mixedOrigins() {
+        HIDSet set = HIDSet.copyOf(Arrays.asList(
+                HID.from("file:///a"),
+                HID.from("http://host/a"),
+                HID.from("file:///a/b"),
+                HID.from("http://host/a/c"),
+                HID.from("http://other/a/d")));
+        assertThat(set).hasSize(5);
+        assertThat(set.contains(HID.from("file:///a"))).isTrue();
+        assertThat(set.contains(HID.from("http://host/a"))).isTrue();
+        assertThat(set.contains(HID.from("http://other/a"))).isFalse();
+        assertThat(set.descendantsOf(HID.from("file:///a"))).containsExactly(HID.from("file:///a/b"));
+        assertThat(set.descendantsOf(HID.from("http://host/a"))).containsExactly(HID.from("http://host/a/c"));
+        assertThat(set.subtreeSize(HID.from("http://other/"))).isEqualTo(1);
+    }
+
+    @Test
+    public void randomSubtrees() {
+        List<HID> hids = randomHids(500);
+        HIDSet set = HIDSet.copyOf(hids);
+        List<HID> queries = new ArrayList<>(hids.subList(0, 100));
+        queries.add(HID.from("file:///"));
+        queries.add(HID.from("file:///1"));
+        checkSubtrees(set, queries);
+        checkSubtrees(set.descendingSet().descendingSet(), queries);
+    }
+
+    @Test
+    public void navigableSet() {
+        List<HID> hids = randomHids(200);
+        HIDSet set = HIDSet.copyOf(hids.subList(0, 100));
+        NavigableSet<HID> expected = new TreeSet<>(set.comparator());
+        expected.addAll(hids.subList(0, 100));
+        assertThat(set).containsExactlyElementsIn(expected).inOrder();
+        assertThat(set.descendingSet()).containsExactlyElementsIn(expected.descendingSet()).inOrder();
+        assertThat(set.first()).isEqualTo(expected.first());
+        assertThat(set.last()).isEqualTo(expected.last());
+        for (HID hid : hids) {
+            assertThat(set.contains(hid)).isEqualTo(expected.contains(hid));
+            assertThat(set.lower(hid)).isEqualTo(expected.lower(hid));
+            assertThat(set.floor(hid)).isEqualTo(expected.floor(hid));
+            assertThat(set.ceiling(hid)).isEqualTo(expected.ceiling(hid));
+            assertThat(set.higher(hid)).isEqualTo(expected.higher(hid));
+            assertThat(set.descendingSet().lower(hid)).isEqualTo(expected.descendingSet().lower(hid));
+            assertThat(set.descendingSet().floor(hid)).isEqualTo(expected.descendingSet().floor(hid));
+            assertThat(set.descendingSet().ceiling(hid)).isEqualTo(expected.descendingSet().ceiling(hid));
+            assertThat(set.descendingSet().higher(hid)).isEqualTo(expected.descendingSet().higher(hid));
+            assertThat(set.headSet(hid, true)).containsExactlyElementsIn(expected.headSet(hid, true)).inOrder();
+            assertThat(set.tailSet(hid, false)).containsExactlyElementsIn(expected.tailSet(hid, false)).inOrder();
+            assertThat(set.descendingSet().headSet(hid, false))
+                    .containsExactlyElementsIn(expected.descendingSet().headSet(hid, false)).inOrder();
+            assertThat(set.descendingSet().tailSet(hid, true))
+                    .containsExactlyElementsIn(expected.descendingSet().tailSet(hid, true)).inOrder();
+        }
+        HID from = expected.first();
+        HID to = expected.higher(expected.higher(from));
+        assertThat(set.subSet(from, to)).containsExactlyElementsIn(expected.subSet(from, to)).inOrder();
+        assertThat(set.descendingSet().subSet(to, true, from, false))
+                .containsExactlyElementsIn(expected.descendingSet().subSet(to, true, from, false)).inOrder();
+    }
+
+    @Test
+    public void mapped() throws IOException {
+        List<HID> hids = randomHids(500);
+        HIDSet set = HIDSet.copyOf(hids);
+        Path file = Files.createTempFile("hids", ".bin");
+        try {
+            set.writeTo(file);
+            HIDSet mapped = HIDSet.map(file);
+            assertThat(mapped).containsExactlyElementsIn(set).inOrder();
+            checkSubtrees(mapped, hids.subList(0, 50));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void mappedEmpty() throws IOException {
+        Path file = Files.createTempFile("hids", ".bin");
+        try {
+            HIDSet.copyOf(new ArrayList<>()).writeTo(file);
+            assertThat(HIDSet.map(file)).isEmpty();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.value;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the {@code HIDSorter}.
+ *
+ * @author jgustie
+ */
+public class HidSorterTest {
+
+    private Path temporaryDirectory;
+
+    @Before
+    public void createTemporaryDirectory() throws IOException {
+        temporaryDirectory = Files.createTempDirectory("hids");
+    }
+
+    @After
+    public void deleteTemporaryDirectory() throws IOException {
+        try (Stream<Path> files = Files.list(temporaryDirectory)) {
+            assertThat(files.count()).isEqualTo(0L);
+        }
+        Files.delete(temporaryDirectory);
+    }
+
+    private static List<HID> randomHids(int count) {
+        Random random = new Random(count);
+        List<HID> hids = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            HID.Builder builder = new HID.Builder().push("file", "/" + random.nextInt(10) + "/" + random.nextInt(10) + "/a.tar");
+            for (int nesting = random.nextInt(3); nesting > 0; --nesting) {
+                builder.push("tar", "/" + random.nextInt(10) + "/" + random.nextInt(100) + ".zip");
+            }
+            hids.add(builder.build());
+        }
+        return hids;
+    }
+
+    private static List<HID> sorted(List<HID> hids) {
+        List<HID> sorted = new ArrayList<>(hids);
+        sorted.sort(HID.preOrder());
+        return sorted;
+    }
+
+    @Test
+    public void inMemory() {
+        List<HID> hids = randomHids(100);
+        HIDSorter sorter = new HIDSorter.Builder().temporaryDirectory(temporaryDirectory).build();
+        try (Stream<HID> result = sorter.sort(hids.stream())) {
+            assertThat(result.collect(Collectors.toList())).containsExactlyElementsIn(sorted(hids)).inOrder();
+        }
+    }
+
+    @Test
+    public void external() throws IOException {
+        List<HID> hids = randomHids(5000);
+        HIDSorter sorter = new HIDSorter.Builder().temporaryDirectory(temporaryDirectory).memoryBudget(64 * 1024).build();
+        try (Stream<HID> result = sorter.sort(hids.stream())) {
+            try (Stream<Path> files = Files.list(temporaryDirectory)) {
+                assertThat(files.count()).isGreaterThan(1L);
+            }
+            assertThat(result.collect(Collectors.toList())).containsExactlyElementsIn(sorted(hids)).inOrder();
+        }
+    }
+
+    @Test
+    public void parallel() {
+        List<HID> hids = randomHids(5000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            HIDSorter sorter = new HIDSorter.Builder().temporaryDirectory(temporaryDirectory).memoryBudget(64 * 1024).parallel(executor, 4).build();
+            try (Stream<HID> result = sorter.sort(hids.iterator())) {
+                assertThat(result.collect(Collectors.toList())).containsExactlyElementsIn(sorted(hids)).inOrder();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void customComparator() {
+        List<HID> hids = randomHids(2000);
+        HIDSorter sorter = new HIDSorter.Builder().temporaryDirectory(temporaryDirectory).memoryBudget(16 * 1024)
+                .comparator(HID.preOrder().reversed()).build();
+        List<HID> expected = sorted(hids);
+        Collections.reverse(expected);
+        try (Stream<HID> result = sorter.sort(hids.stream())) {
+            assertThat(result.collect(Collectors.toList())).containsExactlyElementsIn(expected).inOrder();
+        }
+    }
+
+    @Test
+    public void multiplePasses() {
+        // Every HID is its own run and only a few runs can be merged at once, ties must keep the input order
+        List<HID> hids = randomHids(500);
+        Comparator<HID> comparator = Comparator.comparingInt(HID::nesting);
+        HIDSorter sorter = new HIDSorter.Builder().temporaryDirectory(temporaryDirectory).memoryBudget(1L)
+                .comparator(comparator).build();
+        List<HID> expected = new ArrayList<>(hids);
+        expected.sort(comparator);
+        try (Stream<HID> result = sorter.sort(hids.stream())) {
+            assertThat(result.collect(Collectors.toList())).containsExactlyElementsIn(expected).inOrder();
+        }
+    }
+
+    @Test
+    public void empty() {
+        HIDSorter sorter = new HIDSorter.Builder().temporaryDirectory(temporaryDirectory).build();
+        try (Stream<HID> result = sorter.sort(Stream.empty())) {
+            assertThat(result.count()).isEqualTo(0L);
+        }
+    }
+
+}
@@ -18,9 +18,10 @@ package com.blackducksoftware.common.value;
 import static com.google.common.truth.Truth.assertThat;
 
 import java.nio.file.Paths;
+import java.text.Collator;
 import java.util.Arrays;
+import java.util.Locale;
 
-import org.junit.Ignore;
 import org.junit.Test;
 
 /**
@@ -55,6 +56,58 @@ public class HidSortingTest {
                         .isStrictlyOrdered(HID.preOrder());
     }
 
+    @Test
+    public void postOrderHierarchy() {
+        assertThat(Arrays.asList(
+                HID.from(Paths.get("/h/d/a")),
+                HID.from(Paths.get("/h/d/b")),
+                HID.from(Paths.get("/h/d/c")),
+                HID.from(Paths.get("/h/d")),
+                HID.from(Paths.get("/h/e")),
+                HID.from(Paths.get("/h/g/f")),
+                HID.from(Paths.get("/h/g")),
+                HID.from(Paths.get("/h"))))
+                        .isStrictlyOrdered(HID.postOrder());
+    }
+
+    @Test
+    public void postOrderNested() {
+        assertThat(Arrays.asList(
+                HID.from("tar:file:%2F%2F%2Ffoo%2Fa.tar#/x/y"),
+                HID.from("tar:file:%2F%2F%2Ffoo%2Fa.tar#/x"),
+                HID.from("tar:file:%2F%2F%2Ffoo%2Fa.tar#/"),
+                HID.from("file:///foo/a.tar"),
+                HID.from("file:///foo/b.txt"),
+                HID.from("file:///foo"),
+                HID.from("file:///")))
+                        .isStrictlyOrdered(HID.postOrder());
+    }
+
+    @Test
+    public void breadthFirstHierarchy() {
+        assertThat(Arrays.asList(
+                HID.from(Paths.get("/h")),
+                HID.from(Paths.get("/h/d")),
+                HID.from(Paths.get("/h/e")),
+                HID.from(Paths.get("/h/g")),
+                HID.from(Paths.get("/h/d/a")),
+                HID.from(Paths.get("/h/d/b")),
+                HID.from(Paths.get("/h/d/c")),
+                HID.from(Paths.get("/h/g/f"))))
+                        .isStrictlyOrdered(HID.breadthFirst());
+    }
+
+    @Test
+    public void breadthFirstNested() {
+        assertThat(Arrays.asList(
+                HID.from("file:///foo"),
+                HID.from("file:///foo/a.tar"),
+                HID.from("file:///foo/b.txt"),
+                HID.from("tar:file:%2F%2F%2Ffoo%2Fa.tar#/"),
+                HID.from("tar:file:%2F%2F%2Ffoo%2Fa.tar#/x")))
+                        .isStrictlyOrdered(HID.breadthFirst());
+    }
+
     @Test
     public void caseSensitivity() {
         assertThat(Arrays.asList(
@@ -92,7 +145,6 @@ public class HidSortingTest {
     }
 
     @Test
-    @Ignore("This type of sorting still needs to be implemented")
     public void numeric() {
         assertThat(Arrays.asList(
                 HID.from(Paths.get("/0")),
@@ -106,7 +158,60 @@ public class HidSortingTest {
                 HID.from(Paths.get("/8")),
                 HID.from(Paths.get("/9")),
                 HID.from(Paths.get("/10"))))
-                        .isStrictlyOrdered(HID.preOrder());
+                        .isStrictlyOrdered(HID.preOrder(HIDSegmentOrder.natural()));
+    }
+
+    @Test
+    public void versions() {
+        assertThat(Arrays.asList(
+                HID.from(Paths.get("/lib/lib-1.9.jar")),
+                HID.from(Paths.get("/lib/lib-1.9.jar/x")),
+                HID.from(Paths.get("/lib/lib-1.010.1.jar")),
+                HID.from(Paths.get("/lib/lib-1.10.1.jar")),
+                HID.from(Paths.get("/lib/lib-1.10.jar")),
+                HID.from(Paths.get("/lib/lib-2.jar")),
+                HID.from(Paths.get("/lib/lib-a.jar"))))
+                        .isStrictlyOrdered(HID.preOrder(HIDSegmentOrder.natural()));
+    }
+
+    @Test
+    public void caseInsensitive() {
+        assertThat(Arrays.asList(
+                HID.from(Paths.get("/A")),
+                HID.from(Paths.get("/a")),
+                HID.from(Paths.get("/a/B")),
+                HID.from(Paths.get("/a/c")),
+                HID.from(Paths.get("/b")),
+                HID.from(Paths.get("/C"))))
+                        .isStrictlyOrdered(HID.preOrder(HIDSegmentOrder.caseInsensitive()));
+    }
+
+    @Test
+    public void collated() {
+        assertThat(Arrays.asList(
+                HID.from(Paths.get("/a")),
+                HID.from("file:///%C3%A9"),
+                HID.from(Paths.get("/f")),
+                HID.from(Paths.get("/z"))))
+                        .isStrictlyOrdered(HID.preOrder(HIDSegmentOrder.collated(Locale.ENGLISH)));
+    }
+
+    @Test
+    public void collatedWithoutCache() {
+        assertThat(Arrays.asList(
+                HID.from(Paths.get("/a")),
+                HID.from("file:///%C3%A9"),
+                HID.from(Paths.get("/f")),
+                HID.from(Paths.get("/z"))))
+                        .isStrictlyOrdered(HID.preOrder(HIDSegmentOrder.collated(Collator.getInstance(Locale.ENGLISH), 0L)));
+    }
+
+    @Test
+    public void ignorePathNumeric() {
+        assertThat(Arrays.asList(
+                HID.from(Paths.get("/b/2")),
+                HID.from(Paths.get("/a/10"))))
+                        .isStrictlyOrdered(HID.ignorePathOrder(HIDSegmentOrder.natural()));
     }
 
     @Test
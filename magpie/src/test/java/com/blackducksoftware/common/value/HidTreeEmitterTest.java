@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.value;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@code HIDTreeEmitter}.
+ *
+ * @author jgustie
+ */
+public class HidTreeEmitterTest {
+
+    private static List<HID> randomHids(int count) {
+        Random random = new Random(count);
+        List<HID> hids = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            HID.Builder builder = new HID.Builder().push("file", "/" + random.nextInt(3) + "/" + random.nextInt(3));
+            for (int nesting = random.nextInt(3); nesting > 0; --nesting) {
+                builder.push("zip", random.nextBoolean() ? "/" : "/" + random.nextInt(3) + "/" + random.nextInt(3));
+            }
+            hids.add(builder.build());
+            if (random.nextBoolean()) {
+                hids.add(builder.build().getParent());
+            }
+        }
+        return hids;
+    }
+
+    @Test
+    public void events() {
+        List<String> events = new ArrayList<>();
+        HIDTreeEmitter.emit(Arrays.asList(
+                HID.from("file:///h"),
+                HID.from("file:///h/d"),
+                HID.from("file:///h/d/a"),
+                HID.from("file:///h/d/a"),
+                HID.from("file:///h/d/b"),
+                HID.from("file:///h/e"),
+                HID.from("file:///h/g/f")), new HIDTreeEmitter.Listener() {
+                    @Override
+                    public void enter(HID hid) {
+                        events.add("+" + hid.getName());
+                    }
+
+                    @Override
+                    public void leave(HID hid) {
+                        events.add("-" + hid.getName());
+                    }
+                });
+        assertThat(events).containsExactly("+h", "+d", "+a", "-a", "+b", "-b", "-d", "+e", "-e", "+f", "-f", "-h").inOrder();
+    }
+
+    @Test
+    public void rollup() {
+        // Count the number of descendants of each HID
+        Map<HID, Integer> counts = new HashMap<>();
+        HIDTreeEmitter.emit(Arrays.asList(
+                HID.from("file:///foo"),
+                HID.from("file:///foo/a.tar"),
+                HID.from("tar:file:%2F%2F%2Ffoo%2Fa.tar#/x"),
+                HID.from("tar:file:%2F%2F%2Ffoo%2Fa.tar#/y"),
+                HID.from("file:///foo/b.txt")), new HIDTreeEmitter.Listener() {
+                    private final Deque<Integer> stack = new ArrayDeque<>();
+
+                    @Override
+                    public void enter(HID hid) {
+                        stack.push(0);
+                    }
+
+                    @Override
+                    public void leave(HID hid) {
+                        int count = stack.pop();
+                        counts.put(hid, count);
+                        if (!stack.isEmpty()) {
+                            stack.push(stack.pop() + count + 1);
+                        }
+                    }
+                });
+        assertThat(counts.get(HID.from("file:///foo"))).isEqualTo(4);
+        assertThat(counts.get(HID.from("file:///foo/a.tar"))).isEqualTo(2);
+        assertThat(counts.get(HID.from("file:///foo/b.txt"))).isEqualTo(0);
+    }
+
+    @Test
+    public void toPostOrder() {
+        List<HID> hids = randomHids(500);
+        hids.sort(HID.preOrder());
+        List<HID> postOrder = new ArrayList<>();
+        for (Iterator<HID> i = HIDTreeEmitter.toPostOrder(hids.iterator()); i.hasNext();) {
+            postOrder.add(i.next());
+        }
+
+        List<HID> expected = new ArrayList<>(new LinkedHashSet<>(hids));
+        expected.sort(HID.postOrder());
+        assertThat(postOrder).containsExactlyElementsIn(expected).inOrder();
+    }
+
+    @Test
+    public void distinctOrigins() {
+        // HIDs sharing a path with a different scheme or authority are not duplicates
+        List<HID> hids = new ArrayList<>(Arrays.asList(
+                HID.from("http://h/a/b"),
+                HID.from("file:///a/b"),
+                HID.from("http://h/a"),
+                HID.from("file:///a"),
+                HID.from("file:///a")));
+        hids.sort(HIDSet.ORDER);
+        List<String> events = new ArrayList<>();
+        HIDTreeEmitter.emit(hids, new HIDTreeEmitter.Listener() {
+            @Override
+            public void enter(HID hid) {
+                events.add("+" + hid.toUriString());
+            }
+
+            @Override
+            public void leave(HID hid) {
+                events.add("-" + hid.toUriString());
+            }
+        });
+        assertThat(events).containsExactly(
+                "+file:///a", "+file:///a/b", "-file:///a/b", "-file:///a",
+                "+http://h/a", "+http://h/a/b", "-http://h/a/b", "-http://h/a").inOrder();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsorted() {
+        HIDTreeEmitter.emit(Arrays.asList(HID.from("file:///b"), HID.from("file:///a")), new HIDTreeEmitter.Listener() {});
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019 Synopsys, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackducksoftware.common.value;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+import com.blackducksoftware.common.value.HIDTree.Node;
+
+/**
+ * Tests for the {@code HIDTree}.
+ *
+ * @author jgustie
+ */
+public class HidTreeTest {
+
+    @Test
+    public void toHID() {
+        HIDTree tree = new HIDTree();
+        for (String uri : new String[] {
+                "file:///",
+                "file:///foo/bar/gus.txt",
+                "file://example.com/foo",
+                "http://example.com/foo",
+                "tar:file:%2F%2F%2Ffoo%2Fbar.tar#/",
+                "tar:file:%2F%2F%2Ffoo%2Fbar.tar#/test.txt",
+                "zip:tar:file:%252Fz%252Fy%252Fx%23%2Fh%2Fd%2Fa#/l/m/n" }) {
+            HID hid = HID.from(uri);
+            assertThat(tree.add(hid).toHID()).isEqualTo(hid);
+        }
+    }
+
+    @Test
+    public void canonicalNodes() {
+        HIDTree tree = new HIDTree();
+        Node node = tree.add(HID.from("file:///foo/bar/gus.txt"));
+        assertThat(tree.add(HID.from("file:///foo/bar/gus.txt"))).isSameAs(node);
+        assertThat(tree.get(HID.from("file:///foo/bar/gus.txt"))).isSameAs(node);
+        assertThat(tree.get(HID.from("file:///foo/bar"))).isSameAs(node.getParent());
+        assertThat(tree.get(HID.from("file:///foo/bar/gus.txt/x"))).isNull();
+        assertThat(tree.get(HID.from("file://example.com/foo/bar/gus.txt"))).isNull();
+        assertThat(tree.contains(HID.from("file:///foo"))).isTrue();
+        assertThat(tree.size()).isEqualTo(4L);
+    }
+
+    @Test
+    public void sharedPrefixes() {
+        HIDTree tree = new HIDTree();
+        Node foo = tree.add(HID.from("file:///a/b/foo"));
+        Node bar = tree.add(HID.from("file:///a/b/bar"));
+        assertThat(foo.getParent()).isSameAs(bar.getParent());
+        assertThat(tree.size()).isEqualTo(5L);
+    }
+
+    @Test
+    public void navigation() {
+        HIDTree tree = new HIDTree();
+        HID hid = HID.from("zip:tar:file:%252Fz%252Fy%252Fx%23%2Fh%2Fd%2Fa#/l/m/n");
+        Node node = tree.add(hid);
+
+        assertThat(node.getName()).isEqualTo("n");
+        assertThat(node.getScheme()).isEqualTo("zip");
+        assertThat(node.getParent().toHID()).isEqualTo(hid.getParent());
+        assertThat(node.getRoot().toHID()).isEqualTo(hid.getRoot());
+        assertThat(node.getRoot().isRoot()).isTrue();
+        assertThat(node.getRoot().getParent()).isSameAs(node.getContainer());
+        assertThat(node.getContainer().toHID()).isEqualTo(hid.getContainer());
+        assertThat(node.getContainer().getContainer().toHID()).isEqualTo(hid.getContainer().getContainer());
+        assertThat(node.getBase().toHID()).isEqualTo(hid.getBase());
+        assertThat(node.getBase().hasContainer()).isFalse();
+        assertThat(node.getBase().getContainer()).isNull();
+        assertThat(node.hasContainer()).isTrue();
+    }
+
+    @Test
+    public void isAncestor() {
+        HIDTree tree = new HIDTree();
+        Node node = tree.add(HID.from("tar:file:%2F%2F%2Ffoo%2Fbar.tar#/test/a.txt"));
+        Node other = tree.add(HID.from("file:///foo/gus.tar"));
+        for (Node ancestor = node.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+            assertThat(node.isAncestor(ancestor)).isTrue();
+            assertThat(node.toHID().isAncestor(ancestor.toHID())).isTrue();
+        }
+        assertThat(node.isAncestor(node)).isFalse();
+        assertThat(node.isAncestor(other)).isFalse();
+        assertThat(node.getParent().isAncestor(node)).isFalse();
+    }
+
+}